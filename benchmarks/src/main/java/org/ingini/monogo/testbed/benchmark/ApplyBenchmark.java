@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.benchmark;
+
+import com.mongodb.DBCollection;
+import com.mongodb.Mongo;
+import org.ingini.monogo.testbed.MongoManager;
+import org.ingini.monogo.testbed.annotation.MongoTestBedCollection;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The drop/create/fill cycle {@link MongoManager#apply} runs for every test class, measured against a running mongod
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class ApplyBenchmark {
+
+    private static final Statement NO_TEST = new Statement() {
+        @Override
+        public void evaluate() {
+        }
+    };
+
+    public static class SeededTest {
+        @MongoTestBedCollection(name = "test_collection", location = "test_collection.json")
+        public static DBCollection collection;
+
+        @Inject
+        public static Mongo mongo;
+    }
+
+    @Benchmark
+    public DBCollection apply(EmbeddedMongod mongod) throws Throwable {
+        MongoManager.mongoConnect(mongod.uri())
+                .apply(NO_TEST, Description.createSuiteDescription(SeededTest.class)).evaluate();
+        SeededTest.mongo.close();
+        return SeededTest.collection;
+    }
+}
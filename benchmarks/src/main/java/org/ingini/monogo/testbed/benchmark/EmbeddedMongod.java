@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.benchmark;
+
+import com.mongodb.DB;
+import com.mongodb.Mongo;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.ingini.monogo.testbed.MongoManager;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+
+/**
+ * An embedded mongod on a free localhost port, started once per benchmark trial
+ */
+@State(Scope.Benchmark)
+public class EmbeddedMongod {
+
+    public static final String DATABASE = "monogo_testbed_benchmark";
+
+    private MongodExecutable mongodExe;
+    private MongodProcess mongod;
+    private Mongo mongo;
+    private int port;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        port = Network.getFreeServerPort();
+        mongodExe = MongodStarter.getDefaultInstance().prepare(new MongodConfig(Version.V2_2_0, port, Network.localhostIsIPv6()));
+        mongod = mongodExe.start();
+        mongo = new Mongo(MongoManager.DEFAULT_HOST, port);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (mongo != null) {
+            mongo.close();
+        }
+        if (mongod != null) {
+            mongod.stop();
+        }
+        if (mongodExe != null) {
+            mongodExe.cleanup();
+        }
+    }
+
+    public String uri() {
+        return "mongodb://" + MongoManager.DEFAULT_HOST + ":" + port;
+    }
+
+    public DB database() {
+        return mongo.getDB(DATABASE);
+    }
+}
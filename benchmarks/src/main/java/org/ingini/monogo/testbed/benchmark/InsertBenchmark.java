@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.benchmark;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.ingini.monogo.testbed.fixture.DocumentReader;
+import org.ingini.monogo.testbed.fixture.FixtureLoader;
+import org.ingini.monogo.testbed.fixture.JsonArrayDocumentReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput of {@link FixtureLoader} for several fixture and batch sizes, with and without JSON parsing. Each
+ * invocation starts from a freshly created, empty collection.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class InsertBenchmark {
+
+    private static final String COLLECTION = "insert_benchmark";
+
+    @Param({"1000", "10000", "100000"})
+    public int fixtureSize;
+
+    @Param({"100", "1000", "10000"})
+    public int batchSize;
+
+    private String fixture;
+    private List<DBObject> documents;
+    private DBCollection collection;
+
+    @Setup(Level.Trial)
+    public void render() {
+        fixture = JsonFixtures.jsonArray(fixtureSize);
+        documents = JsonFixtures.documents(fixtureSize);
+    }
+
+    @Setup(Level.Invocation)
+    public void recreateCollection(EmbeddedMongod mongod) {
+        mongod.database().getCollection(COLLECTION).drop();
+        collection = mongod.database().createCollection(COLLECTION, new BasicDBObject());
+    }
+
+    @Benchmark
+    public long parseAndInsert() throws IOException {
+        return new FixtureLoader(batchSize).load(collection, new JsonArrayDocumentReader(new StringReader(fixture)));
+    }
+
+    @Benchmark
+    public long insert() throws IOException {
+        final Iterator<DBObject> iterator = documents.iterator();
+        return new FixtureLoader(batchSize).load(collection, new DocumentReader() {
+            @Override
+            public DBObject next() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.benchmark;
+
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+import org.ingini.monogo.testbed.fixture.DocumentTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders fixtures of arbitrary size in the JSON array format of the checked-in fixtures, string {@code _id}s included
+ */
+final class JsonFixtures {
+
+    static final String TEMPLATE = "benchmark_template.json";
+    static final long SEED = 42;
+
+    private JsonFixtures() {
+    }
+
+    static String jsonArray(int documents) {
+        StringBuilder json = new StringBuilder("[");
+        for (DBObject document : documents(documents)) {
+            if (json.length() > 1) {
+                json.append(",\n");
+            }
+            document.put("_id", document.get("_id").toString());
+            json.append(JSON.serialize(document));
+        }
+        return json.append("]").toString();
+    }
+
+    static List<DBObject> documents(int documents) {
+        DocumentTemplate template = DocumentTemplate.load(TEMPLATE, SEED);
+        List<DBObject> result = new ArrayList<DBObject>(documents);
+        for (int i = 0; i < documents; i++) {
+            result.add(template.generate(i));
+        }
+        return result;
+    }
+}
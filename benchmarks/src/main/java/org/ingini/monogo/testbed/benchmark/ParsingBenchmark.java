@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.benchmark;
+
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+import org.ingini.monogo.testbed.fixture.JsonArrayDocumentReader;
+import org.ingini.monogo.testbed.fixture.MongoIdTransformerJSONCallback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON parsing through {@link MongoIdTransformerJSONCallback}, of a whole fixture at once and streamed document by
+ * document
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@State(Scope.Benchmark)
+public class ParsingBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int fixtureSize;
+
+    private String fixture;
+
+    @Setup(Level.Trial)
+    public void render() {
+        fixture = JsonFixtures.jsonArray(fixtureSize);
+    }
+
+    @Benchmark
+    public Object parseWholeFixture() {
+        return JSON.parse(fixture, new MongoIdTransformerJSONCallback());
+    }
+
+    @Benchmark
+    public void streamDocuments(Blackhole blackhole) throws IOException {
+        JsonArrayDocumentReader reader = new JsonArrayDocumentReader(new StringReader(fixture));
+        for (DBObject document = reader.next(); document != null; document = reader.next()) {
+            blackhole.consume(document);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.benchmark;
+
+import com.mongodb.DB;
+import com.mongodb.Mongo;
+import org.ingini.monogo.testbed.MongoManager;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of getting a usable mongo: starting and stopping an embedded mongod, and connecting to a running one
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final Statement NO_TEST = new Statement() {
+        @Override
+        public void evaluate() {
+        }
+    };
+
+    public static class ConnectedTest {
+        @Inject
+        public static Mongo mongo;
+
+        @Inject
+        public static DB mongoDB;
+    }
+
+    @Benchmark
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public long mongoFlapdoodle() {
+        MongoManager mongoManager = MongoManager.mongoFlapdoodle();
+        mongoManager.stop();
+        return mongoManager.getStartupTimeMillis();
+    }
+
+    @Benchmark
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public Object mongoConnect(EmbeddedMongod mongod) throws Throwable {
+        MongoManager.mongoConnect(mongod.uri())
+                .apply(NO_TEST, Description.createSuiteDescription(ConnectedTest.class)).evaluate();
+        try {
+            return ConnectedTest.mongoDB.command("ping");
+        } finally {
+            ConnectedTest.mongo.close();
+        }
+    }
+}
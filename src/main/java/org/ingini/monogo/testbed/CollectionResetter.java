@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.CommandResult;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.ingini.monogo.testbed.annotation.MongoTestBedCollection;
+import org.ingini.monogo.testbed.fixture.CollectionCopier;
+import org.ingini.monogo.testbed.metrics.Phase;
+import org.ingini.monogo.testbed.metrics.TestBedMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a pristine server-side copy of every seeded collection along with its state, i.e. its {@code dbHash}, its
+ * indexes and its write count as reported by the {@code top} command. After each test a single {@code top} tells
+ * which collections were written, whichever handle the test wrote through, and only their {@code dbHash} is compared,
+ * so the cost of a reset follows what the test touched instead of the size of all fixtures. Collections which changed
+ * are recreated from their copies and their declared indexes are built again. Where {@code top} is not available the
+ * {@code dbHash} of every collection is compared, and where {@code dbHash} is not available either, e.g. through a
+ * mongos, every written collection is recreated.
+ */
+class CollectionResetter {
+
+    static final String PRISTINE_PREFIX = "testbed_pristine.";
+    private static final String[] WRITE_COUNTERS = {"insert", "update", "remove", "writeLock"};
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DB mongoDB;
+    private final CollectionCopier copier;
+    private final CollectionSeeder seeder;
+    private final TestBedMetrics metrics;
+    private final Map<String, MongoTestBedCollection> tracked = new LinkedHashMap<String, MongoTestBedCollection>();
+    private final Map<String, CollectionState> pristineStates = new ConcurrentHashMap<String, CollectionState>();
+    private final Map<String, Long> pristineWriteCounts = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * The content hash and the indexes of a collection
+     */
+    private static final class CollectionState {
+
+        final Object hash;
+        final List<DBObject> indexes;
+
+        private CollectionState(Object hash, List<DBObject> indexes) {
+            this.hash = hash;
+            this.indexes = indexes;
+        }
+
+        boolean matches(Object otherHash, List<DBObject> otherIndexes) {
+            return hash != null && hash.equals(otherHash) && indexes.equals(otherIndexes);
+        }
+    }
+
+    CollectionResetter(DB mongoDB, CollectionSeeder seeder, TestBedMetrics metrics) {
+        this.mongoDB = mongoDB;
+        this.copier = new CollectionCopier(mongoDB);
+        this.seeder = seeder;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Copies the freshly seeded collection {@code name} aside and remembers its state
+     */
+    void keepPristineCopy(String name) {
+        String pristine = PRISTINE_PREFIX + name;
+        dropIfExists(pristine);
+        copier.copy(name, pristine);
+        pristineStates.put(name, stateOf(name));
+        Map<String, Long> writeCounts = writeCounts(Collections.singletonList(name));
+        if (writeCounts != null) {
+            pristineWriteCounts.putAll(writeCounts);
+        }
+    }
+
+    /**
+     * @param name of the collection to recreate after each test which changed it, once its pristine copy is kept
+     */
+    void track(MongoTestBedCollection annotation, String name) {
+        tracked.put(name, annotation);
+    }
+
+    /**
+     * Recreates every collection changed since the last reset from its pristine copy
+     */
+    void resetDirtyCollections() {
+        List<String> seeded = new ArrayList<String>();
+        for (String name : tracked.keySet()) {
+            if (pristineStates.containsKey(name)) {
+                seeded.add(name);
+            }
+        }
+        if (seeded.isEmpty()) {
+            return;
+        }
+        Map<String, Long> writeCounts = writeCounts(seeded);
+        List<String> written = new ArrayList<String>();
+        for (String name : seeded) {
+            if (writeCounts == null || !writeCounts.get(name).equals(pristineWriteCounts.get(name))) {
+                written.add(name);
+            }
+        }
+        Map<String, Object> hashes = written.isEmpty() ? Collections.<String, Object>emptyMap() : hashes(written);
+        boolean anyRestored = false;
+        for (String name : seeded) {
+            CollectionState pristine = pristineStates.get(name);
+            boolean unchanged = written.contains(name)
+                    ? hashes != null && pristine.matches(hashes.get(name), indexesOf(name))
+                    : pristine.indexes.equals(indexesOf(name));
+            if (unchanged) {
+                continue;
+            }
+            long restoreStart = System.nanoTime();
+            logger.debug("Restoring changed mongo collection {} from its pristine copy", name);
+            dropIfExists(name);
+            DBCollection restored = copier.copy(PRISTINE_PREFIX + name, name);
+            seeder.buildIndexes(restored, tracked.get(name).indexes());
+            // the restored collection is pristine by definition, whatever order its documents were copied in
+            pristineStates.put(name, stateOf(name));
+            metrics.record(Phase.RESTORE, name, restoreStart);
+            anyRestored = true;
+        }
+        if (writeCounts != null && (anyRestored || !written.isEmpty())) {
+            // the restores are writes as well
+            Map<String, Long> restoredWriteCounts = writeCounts(seeded);
+            if (restoredWriteCounts != null) {
+                pristineWriteCounts.putAll(restoredWriteCounts);
+            }
+        }
+    }
+
+    void dropPristineCopies() {
+        for (String name : tracked.keySet()) {
+            dropIfExists(PRISTINE_PREFIX + name);
+        }
+        tracked.clear();
+        pristineStates.clear();
+        pristineWriteCounts.clear();
+    }
+
+    private CollectionState stateOf(String name) {
+        Map<String, Object> hashes = hashes(Collections.singletonList(name));
+        return new CollectionState(hashes == null ? null : hashes.get(name), indexesOf(name));
+    }
+
+    /**
+     * @return the {@code dbHash} of each of the {@code names} present or {@code null} if {@code dbHash} is not available
+     */
+    private Map<String, Object> hashes(List<String> names) {
+        CommandResult result = mongoDB.command(new BasicDBObject("dbHash", 1).append("collections", names));
+        if (!result.ok() || !(result.get("collections") instanceof DBObject)) {
+            logger.debug("No dbHash available, restoring every collection: {}", result.getErrorMessage());
+            return null;
+        }
+        DBObject collections = (DBObject) result.get("collections");
+        Map<String, Object> hashes = new LinkedHashMap<String, Object>();
+        for (String name : names) {
+            hashes.put(name, collections.get(name));
+        }
+        return hashes;
+    }
+
+    /**
+     * @return the number of writes to each of the {@code names} since the mongod started, zero for a collection without
+     * any, or {@code null} if {@code top} is not available
+     */
+    private Map<String, Long> writeCounts(Collection<String> names) {
+        CommandResult result = mongoDB.getSisterDB("admin").command("top");
+        if (!result.ok() || !(result.get("totals") instanceof DBObject)) {
+            logger.debug("No top available, comparing the dbHash of every collection: {}", result.getErrorMessage());
+            return null;
+        }
+        DBObject totals = (DBObject) result.get("totals");
+        Map<String, Long> writeCounts = new LinkedHashMap<String, Long>();
+        for (String name : names) {
+            long writeCount = 0;
+            Object usage = totals.get(mongoDB.getName() + "." + name);
+            for (String counter : WRITE_COUNTERS) {
+                Object operations = usage instanceof DBObject ? ((DBObject) usage).get(counter) : null;
+                if (operations instanceof DBObject && ((DBObject) operations).get("count") instanceof Number) {
+                    writeCount += ((Number) ((DBObject) operations).get("count")).longValue();
+                }
+            }
+            writeCounts.put(name, writeCount);
+        }
+        return writeCounts;
+    }
+
+    private List<DBObject> indexesOf(String name) {
+        return mongoDB.collectionExists(name) ? mongoDB.getCollection(name).getIndexInfo() : Collections.<DBObject>emptyList();
+    }
+
+    private void dropIfExists(String name) {
+        if (mongoDB.collectionExists(name)) {
+            mongoDB.getCollection(name).drop();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+import org.ingini.monogo.testbed.annotation.MongoTestBedCollection;
+import org.ingini.monogo.testbed.annotation.MongoTestBedGenerated;
+import org.ingini.monogo.testbed.annotation.MongoTestBedIndex;
+import org.ingini.monogo.testbed.fixture.BulkLoadOptions;
+import org.ingini.monogo.testbed.fixture.CompiledFixtureLoader;
+import org.ingini.monogo.testbed.fixture.FixtureCache;
+import org.ingini.monogo.testbed.fixture.FixtureCompiler;
+import org.ingini.monogo.testbed.fixture.FixtureFormat;
+import org.ingini.monogo.testbed.fixture.FixtureLoader;
+import org.ingini.monogo.testbed.fixture.GeneratedFixtureLoader;
+import org.ingini.monogo.testbed.fixture.ParallelFixtureLoader;
+import org.ingini.monogo.testbed.metrics.Phase;
+import org.ingini.monogo.testbed.metrics.TestBedMetrics;
+import org.junit.runners.model.MultipleFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drops, creates and fills the collections declared through {@link MongoTestBedCollection} concurrently on a bounded
+ * pool of workers. The class setup time is therefore dominated by the largest fixture instead of the sum of all.
+ * Declared indexes are built only after all fixtures have been loaded.
+ */
+class CollectionSeeder {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DB mongoDB;
+    private final int threads;
+    private final int batchSize;
+    private final FixtureCache fixtureCache;
+    private final boolean compiledFixtures;
+    private final TestBedMetrics metrics;
+    private final CollectionSharder sharder;
+
+    /**
+     * @param fixtureCache     used to restore unchanged fixtures from their templates, {@code null} to always reload them
+     * @param compiledFixtures whether to load the fixtures through their precompiled BSON form
+     * @param metrics          receiving the timings of every seeding phase
+     */
+    CollectionSeeder(DB mongoDB, int threads, int batchSize, FixtureCache fixtureCache, boolean compiledFixtures,
+                     TestBedMetrics metrics) {
+        this.mongoDB = mongoDB;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.fixtureCache = fixtureCache;
+        this.compiledFixtures = compiledFixtures;
+        this.metrics = metrics;
+        this.sharder = new CollectionSharder(mongoDB, metrics);
+    }
+
+    /**
+     * Seeds the collections of all {@code fields}, waits for every load to finish and then builds the declared indexes,
+     * the indexes of different collections in parallel
+     *
+     * @param fields annotated with {@link MongoTestBedCollection}
+     * @return the seeded collection of each field in declaration order
+     * @throws Throwable aggregating the failures of all loaders or index builds which did not succeed
+     */
+    Map<Field, DBCollection> seed(List<Field> fields) throws Throwable {
+        Map<Field, DBCollection> collections = new LinkedHashMap<Field, DBCollection>();
+        if (fields.isEmpty()) {
+            return collections;
+        }
+        checkUniqueNames(fields);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, fields.size()), new SeederThreadFactory());
+        try {
+            Map<Field, Future<DBCollection>> loads = new LinkedHashMap<Field, Future<DBCollection>>();
+            for (Field field : fields) {
+                final MongoTestBedCollection annotation = field.getAnnotation(MongoTestBedCollection.class);
+                final MongoTestBedGenerated generated = field.getAnnotation(MongoTestBedGenerated.class);
+                loads.put(field, executor.submit(new Callable<DBCollection>() {
+                    @Override
+                    public DBCollection call() {
+                        return seed(annotation, generated);
+                    }
+                }));
+            }
+            collections.putAll(await(loads, "seed mongo collection"));
+
+            Map<Field, Future<DBCollection>> indexBuilds = new LinkedHashMap<Field, Future<DBCollection>>();
+            for (Map.Entry<Field, DBCollection> seeded : collections.entrySet()) {
+                final MongoTestBedIndex[] indexes = seeded.getKey().getAnnotation(MongoTestBedCollection.class).indexes();
+                final DBCollection collection = seeded.getValue();
+                if (indexes.length == 0) {
+                    continue;
+                }
+                indexBuilds.put(seeded.getKey(), executor.submit(new Callable<DBCollection>() {
+                    @Override
+                    public DBCollection call() {
+                        buildIndexes(collection, indexes);
+                        return collection;
+                    }
+                }));
+            }
+            await(indexBuilds, "build mongo indexes");
+            return collections;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<Field, DBCollection> await(Map<Field, Future<DBCollection>> tasks, String action) throws Throwable {
+        Map<Field, DBCollection> results = new LinkedHashMap<Field, DBCollection>();
+        List<Throwable> errors = new ArrayList<Throwable>();
+        for (Map.Entry<Field, Future<DBCollection>> task : tasks.entrySet()) {
+            try {
+                results.put(task.getKey(), task.getValue().get());
+            } catch (ExecutionException e) {
+                logger.error("Unable to " + action + " for field {} due to an exception!", task.getKey().getName(), e.getCause());
+                errors.add(e.getCause());
+            }
+        }
+        MultipleFailureException.assertEmpty(errors);
+        return results;
+    }
+
+    /**
+     * Loads the collection. In case {@link MongoTestBedCollection#shardKey()} is given, the collection is sharded and
+     * pre-split before the load and only handed out once its chunks are balanced; being spread over the shards by the
+     * load itself, it is never restored from or stored as template.
+     *
+     * @param generated {@code null} unless the collection is generated from a template
+     */
+    DBCollection seed(MongoTestBedCollection annotation, MongoTestBedGenerated generated) {
+        String name = annotation.name();
+        String[] variant = generated == null ? new String[0]
+                : new String[]{"count=" + generated.count(), "seed=" + generated.seed()};
+        DBObject shardKey = annotation.shardKey().isEmpty() ? null : (DBObject) JSON.parse(annotation.shardKey());
+        FixtureCache cache = shardKey == null ? fixtureCache : null;
+        if (mongoDB.collectionExists(name)) {
+            logger.debug("Dropping already existing mongo collection {}", name);
+            long dropStart = System.nanoTime();
+            mongoDB.getCollection(name).drop();
+            metrics.record(Phase.DROP, name, dropStart);
+        }
+        if (cache != null) {
+            long restoreStart = System.nanoTime();
+            DBCollection restored = cache.restore(name, annotation.location(), variant);
+            if (restored != null) {
+                metrics.record(Phase.RESTORE, name, restoreStart);
+                return restored;
+            }
+        }
+
+        long createStart = System.nanoTime();
+        DBCollection collection = mongoDB.createCollection(name, new BasicDBObject());
+        metrics.record(Phase.CREATE, name, createStart);
+        // templates are rendered per document, hence only plain fixtures can be sampled for split points
+        boolean sharded = shardKey != null && sharder.shard(collection, shardKey, generated == null ? annotation.location() : null);
+        BulkLoadOptions options = bulkLoadOptions(annotation);
+        long loaded;
+        if (generated != null) {
+            loaded = new GeneratedFixtureLoader(options, generated.count(), generated.seed(), threads, metrics).load(collection, annotation.location());
+        } else if (annotation.readers() > 1 && compiledFixtures) {
+            loaded = loadInParallel(collection, annotation, options);
+        } else if (annotation.readers() > 1) {
+            loaded = new ParallelFixtureLoader(options, annotation.readers(), metrics).load(collection, annotation.location());
+        } else if (compiledFixtures) {
+            loaded = new CompiledFixtureLoader(options, new FixtureCompiler(), metrics).load(collection, annotation.location());
+        } else {
+            loaded = new FixtureLoader(options, metrics).load(collection, annotation.location());
+        }
+        verifyCount(collection, loaded, sharded);
+        if (sharded) {
+            sharder.awaitBalanced(collection);
+        }
+        if (cache != null) {
+            cache.store(name, annotation.location(), variant);
+        }
+        return collection;
+    }
+
+    /**
+     * The acknowledged barrier closing an unacknowledged load only reports the error of the last insert of each
+     * connection, hence earlier failures, e.g. duplicate keys, only show in the count of the collection. Through a
+     * mongos the count may include orphans of migrated chunks, so only missing documents are detected there.
+     *
+     * @throws IllegalStateException in case the collection does not hold the {@code loaded} documents
+     */
+    private void verifyCount(DBCollection collection, long loaded, boolean sharded) {
+        long count = collection.count();
+        if (count < loaded || !sharded && count != loaded) {
+            throw new IllegalStateException("Mongo collection " + collection.getName() + " holds " + count
+                    + " document(s) after loading " + loaded + ", some inserts failed without being reported!");
+        }
+    }
+
+    private long loadInParallel(DBCollection collection, MongoTestBedCollection annotation, BulkLoadOptions options) {
+        long compileStart = System.nanoTime();
+        File compiled = new FixtureCompiler().compile(annotation.location());
+        metrics.record(Phase.PARSE, collection.getName(), compileStart);
+        try {
+            return new ParallelFixtureLoader(options, annotation.readers(), metrics).load(collection, compiled, FixtureFormat.BSON);
+        } catch (IOException e) {
+            logger.error("Unable to read compiled fixture {} due to an exception!", compiled, e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void buildIndexes(DBCollection collection, MongoTestBedIndex[] indexes) {
+        for (MongoTestBedIndex index : indexes) {
+            DBObject keys = (DBObject) JSON.parse(index.keys());
+            long startedAt = System.nanoTime();
+            collection.createIndex(keys, indexOptions(index));
+            metrics.record(Phase.INDEX, collection.getName(), startedAt);
+            logger.info("Built index {} on mongo collection {} in {} ms", new Object[]{
+                    index.name().isEmpty() ? keys : index.name(), collection.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)});
+        }
+    }
+
+    static DBObject indexOptions(MongoTestBedIndex index) {
+        DBObject options = new BasicDBObject();
+        if (!index.name().isEmpty()) {
+            options.put("name", index.name());
+        }
+        if (index.unique()) {
+            options.put("unique", true);
+        }
+        if (index.sparse()) {
+            options.put("sparse", true);
+        }
+        return options;
+    }
+
+    BulkLoadOptions bulkLoadOptions(MongoTestBedCollection annotation) {
+        return new BulkLoadOptions(
+                annotation.batchSize() > 0 ? annotation.batchSize() : batchSize,
+                annotation.writeConcern().isEmpty() ? null : BulkLoadOptions.writeConcern(annotation.writeConcern()),
+                annotation.ordered(),
+                annotation.insertConnections());
+    }
+
+    static void checkUniqueNames(List<Field> fields) {
+        Set<String> names = new HashSet<String>();
+        for (Field field : fields) {
+            String name = field.getAnnotation(MongoTestBedCollection.class).name();
+            if (!names.add(name)) {
+                throw new IllegalStateException("Mongo collection " + name + " is declared by more than one field!");
+            }
+        }
+    }
+
+    private static class SeederThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "mongo-testbed-seeder-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
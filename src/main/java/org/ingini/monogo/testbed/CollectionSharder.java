@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.CommandResult;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import org.ingini.monogo.testbed.fixture.BsonOrder;
+import org.ingini.monogo.testbed.fixture.DocumentReader;
+import org.ingini.monogo.testbed.fixture.FixtureFormat;
+import org.ingini.monogo.testbed.fixture.Fixtures;
+import org.ingini.monogo.testbed.metrics.Phase;
+import org.ingini.monogo.testbed.metrics.TestBedMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shards collections through the mongos the testbed is connected to. The collection is sharded while still empty and
+ * pre-split at shard key values sampled from its fixture, with the chunks spread over all shards, so that the load
+ * already inserts into every shard. {@link #awaitBalanced(DBCollection)} holds the test back until the balancer is
+ * done with the collection, hence no chunk moves while the test runs.
+ */
+class CollectionSharder {
+
+    static final long DEFAULT_BALANCE_TIMEOUT_MILLIS = 60000;
+
+    private static final int SAMPLE_SIZE = 1000;
+    private static final long SAMPLE_SEED = 42;
+    private static final long INITIAL_BACKOFF_MILLIS = 10;
+    private static final long MAX_BACKOFF_MILLIS = 500;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DB mongoDB;
+    private final TestBedMetrics metrics;
+
+    CollectionSharder(DB mongoDB, TestBedMetrics metrics) {
+        this.mongoDB = mongoDB;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Shards the empty {@code collection} on {@code shardKey} and, when a fixture is given, pre-splits it into one
+     * chunk per shard
+     *
+     * @param location of the fixture to sample the split points from, {@code null} to leave the splitting to mongo
+     * @return {@code false} in case the testbed is not connected to a mongos and the collection stays unsharded
+     */
+    boolean shard(DBCollection collection, DBObject shardKey, String location) {
+        long startedAt = System.nanoTime();
+        DB admin = mongoDB.getSisterDB("admin");
+        CommandResult enabled = admin.command(new BasicDBObject("enableSharding", mongoDB.getName()));
+        if (!enabled.ok() && !String.valueOf(enabled.getErrorMessage()).contains("already enabled")) {
+            logger.warn("Unable to shard mongo collection {}, leaving it unsharded: {}", collection.getName(), enabled.getErrorMessage());
+            return false;
+        }
+        collection.createIndex(shardKey);
+        admin.command(new BasicDBObject("shardCollection", collection.getFullName()).append("key", shardKey)).throwOnError();
+
+        List<String> shards = shardsPrimaryFirst(admin);
+        if (location != null && shards.size() > 1) {
+            List<DBObject> splitPoints = splitPoints(location, shardKey, shards.size());
+            for (int i = 0; i < splitPoints.size(); i++) {
+                admin.command(new BasicDBObject("split", collection.getFullName()).append("middle", splitPoints.get(i))).throwOnError();
+                // the first chunk stays on the primary shard, the one starting at each split point moves on
+                String target = shards.get((i + 1) % shards.size());
+                admin.command(new BasicDBObject("moveChunk", collection.getFullName())
+                        .append("find", splitPoints.get(i)).append("to", target)).throwOnError();
+            }
+            logger.debug("Pre-split mongo collection {} into {} chunks over {} shards", new Object[]{
+                    collection.getName(), splitPoints.size() + 1, shards.size()});
+        }
+        metrics.record(Phase.INDEX, collection.getName(), startedAt);
+        logger.info("Sharded mongo collection {} on {} in {} ms", new Object[]{collection.getName(), shardKey,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)});
+        return true;
+    }
+
+    /**
+     * Waits until no chunk of {@code collection} is migrating and its chunks are spread as evenly as the balancer
+     * wants them to be
+     *
+     * @throws IllegalStateException in case the collection is not balanced within the timeout
+     */
+    void awaitBalanced(DBCollection collection) {
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + TimeUnit.MILLISECONDS.toNanos(DEFAULT_BALANCE_TIMEOUT_MILLIS);
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        while (!isBalanced(collection)) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Timed out waiting for the chunks of mongo collection "
+                        + collection.getName() + " to be balanced");
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for mongo collection " + collection.getName() + " to be balanced");
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        }
+        metrics.record(Phase.INDEX, collection.getName(), startedAt);
+        logger.debug("Chunks of mongo collection {} balanced after {} ms", collection.getName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private boolean isBalanced(DBCollection collection) {
+        try {
+            DB config = mongoDB.getSisterDB("config");
+            String namespace = collection.getFullName();
+            DBObject lock = config.getCollection("locks").findOne(new BasicDBObject("_id", namespace));
+            if (lock != null && ((Number) lock.get("state")).intValue() > 0) {
+                return false;
+            }
+            Map<String, Integer> chunksPerShard = new HashMap<String, Integer>();
+            for (String shard : shardsPrimaryFirst(mongoDB.getSisterDB("admin"))) {
+                chunksPerShard.put(shard, 0);
+            }
+            DBCursor chunks = config.getCollection("chunks").find(new BasicDBObject("ns", namespace), new BasicDBObject("shard", 1));
+            int total = 0;
+            try {
+                while (chunks.hasNext()) {
+                    String shard = (String) chunks.next().get("shard");
+                    Integer count = chunksPerShard.get(shard);
+                    chunksPerShard.put(shard, count == null ? 1 : count + 1);
+                    total++;
+                }
+            } finally {
+                chunks.close();
+            }
+            return Collections.max(chunksPerShard.values()) - Collections.min(chunksPerShard.values()) < migrationThreshold(total);
+        } catch (MongoException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the chunk count difference between two shards from which on the balancer migrates chunks
+     */
+    static int migrationThreshold(int chunks) {
+        return chunks < 20 ? 2 : chunks < 80 ? 4 : 8;
+    }
+
+    private List<String> shardsPrimaryFirst(DB admin) {
+        CommandResult listed = admin.command("listShards");
+        listed.throwOnError();
+        DBObject database = mongoDB.getSisterDB("config").getCollection("databases").findOne(new BasicDBObject("_id", mongoDB.getName()));
+        String primary = database == null ? null : (String) database.get("primary");
+        List<String> shards = new ArrayList<String>();
+        for (Object shard : (BasicDBList) listed.get("shards")) {
+            String id = (String) ((DBObject) shard).get("_id");
+            if (id.equals(primary)) {
+                shards.add(0, id);
+            } else {
+                shards.add(id);
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Samples the shard key values of the fixture at {@code location} and picks the quantiles splitting them into
+     * {@code chunks} chunks. The sample is bounded, hence so is the memory no matter how big the fixture is.
+     */
+    List<DBObject> splitPoints(String location, final DBObject shardKey, int chunks) {
+        List<DBObject> sample = sampleKeys(location, shardKey);
+        Collections.sort(sample, new Comparator<DBObject>() {
+            @Override
+            public int compare(DBObject first, DBObject second) {
+                return compareKeys(first, second, shardKey);
+            }
+        });
+        List<DBObject> splitPoints = new ArrayList<DBObject>();
+        for (int i = 1; i < chunks && !sample.isEmpty(); i++) {
+            DBObject splitPoint = sample.get(i * sample.size() / chunks);
+            DBObject previous = splitPoints.isEmpty() ? sample.get(0) : splitPoints.get(splitPoints.size() - 1);
+            // a split at the smallest key or at an already used one would leave a chunk empty
+            if (compareKeys(splitPoint, previous, shardKey) > 0) {
+                splitPoints.add(splitPoint);
+            }
+        }
+        return splitPoints;
+    }
+
+    private List<DBObject> sampleKeys(String location, DBObject shardKey) {
+        InputStream source = CollectionSharder.class.getClassLoader().getResourceAsStream(location);
+        if (source == null) {
+            throw new IllegalStateException("Unable to find fixture " + location + " on the classpath!");
+        }
+        List<DBObject> sample = new ArrayList<DBObject>();
+        Random random = new Random(SAMPLE_SEED);
+        DocumentReader reader = null;
+        try {
+            reader = FixtureFormat.open(location, source);
+            long seen = 0;
+            for (DBObject document = reader.next(); document != null; document = reader.next()) {
+                DBObject key = keyOf(document, shardKey);
+                if (key == null) {
+                    continue;
+                }
+                seen++;
+                // reservoir sampling
+                if (sample.size() < SAMPLE_SIZE) {
+                    sample.add(key);
+                } else {
+                    long slot = (long) (random.nextDouble() * seen);
+                    if (slot < SAMPLE_SIZE) {
+                        sample.set((int) slot, key);
+                    }
+                }
+            }
+            return sample;
+        } catch (IOException e) {
+            logger.error("Unable to sample the shard keys of fixture {} due to an exception!", location, e);
+            throw new IllegalStateException(e);
+        } finally {
+            Fixtures.closeQuietly(reader != null ? reader : source);
+        }
+    }
+
+    /**
+     * @return the shard key fields of {@code document}, dotted ones included, or {@code null} if any of them is missing
+     */
+    static DBObject keyOf(DBObject document, DBObject shardKey) {
+        DBObject key = new BasicDBObject();
+        for (String field : shardKey.keySet()) {
+            Object value = document;
+            for (String part : field.split("\\.")) {
+                value = value instanceof DBObject ? ((DBObject) value).get(part) : null;
+            }
+            if (value == null) {
+                return null;
+            }
+            key.put(field, value);
+        }
+        return key;
+    }
+
+    private static int compareKeys(DBObject first, DBObject second, DBObject shardKey) {
+        for (String field : shardKey.keySet()) {
+            int order = BsonOrder.compare(first.get(field), second.get(field));
+            if (order != 0) {
+                return order;
+            }
+        }
+        return 0;
+    }
+}
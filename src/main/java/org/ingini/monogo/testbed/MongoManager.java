@@ -16,17 +16,32 @@
 package org.ingini.monogo.testbed;
 
 import com.mongodb.*;
-import com.mongodb.util.JSON;
-import com.mongodb.util.JSONCallback;
 import de.flapdoodle.embed.mongo.MongodExecutable;
 import de.flapdoodle.embed.mongo.MongodProcess;
-import de.flapdoodle.embed.mongo.MongodStarter;
 import de.flapdoodle.embed.mongo.config.MongodConfig;
 import de.flapdoodle.embed.mongo.distribution.Version;
 import de.flapdoodle.embed.process.runtime.Network;
-import org.bson.BSONObject;
-import org.bson.types.ObjectId;
 import org.ingini.monogo.testbed.annotation.MongoTestBedCollection;
+import org.ingini.monogo.testbed.annotation.MongoTestBedUses;
+import org.ingini.monogo.testbed.fixture.FixtureCache;
+import org.ingini.monogo.testbed.fixture.FixtureCompiler;
+import org.ingini.monogo.testbed.fixture.FixtureLoader;
+import org.ingini.monogo.testbed.load.LoadDriver;
+import org.ingini.monogo.testbed.metrics.Phase;
+import org.ingini.monogo.testbed.metrics.PhaseTiming;
+import org.ingini.monogo.testbed.metrics.TestBedListener;
+import org.ingini.monogo.testbed.metrics.TestBedMetrics;
+import org.ingini.monogo.testbed.process.BrokerLease;
+import org.ingini.monogo.testbed.process.CachingMongodStarter;
+import org.ingini.monogo.testbed.process.FastStorage;
+import org.ingini.monogo.testbed.process.LocalMongoProcess;
+import org.ingini.monogo.testbed.process.MongoBroker;
+import org.ingini.monogo.testbed.process.MongoTopology;
+import org.ingini.monogo.testbed.process.ReplicaSet;
+import org.ingini.monogo.testbed.process.ShardedCluster;
+import org.ingini.monogo.testbed.profile.QueryProfiler;
+import org.junit.Ignore;
+import org.junit.Test;
 import org.junit.rules.TestRule;
 import org.junit.runner.Description;
 import org.junit.runners.model.Statement;
@@ -34,16 +49,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.net.UnknownHostException;
-import java.nio.CharBuffer;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.fest.reflect.core.Reflection.field;
 
@@ -59,43 +77,76 @@ public class MongoManager implements TestRule {
     public static final String DEFAULT_HOST = "localhost";
     public static final int DEFAULT_PORT = 9819;
 
-    private static final int BUFFER_SIZE = 8192; // 8K bytes / 2 bytes = 4K characters
-    private static final int EOF = -1;
-    private static final int START = 0;
-
-    private Process process;
-
     private MongodExecutable mongodExe;
     private MongodProcess mongod;
     private DB mongoDB;
     private Mongo mongo;
 
-    private ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private LocalMongoProcess localMongod;
+    private MongoTopology topology;
+    private BrokerLease lease;
+    private File dataDirectory;
+    private long startupTimeMillis = -1;
 
-    private Future<?> externalMongoThread;
+    private boolean shared;
 
+    private int batchSize = FixtureLoader.DEFAULT_BATCH_SIZE;
+    private int seedingThreads = Runtime.getRuntime().availableProcessors();
+    private boolean fixtureCache;
+    private boolean compiledFixtures;
+    private boolean perTestReset;
+    private boolean lazySeeding;
+    private CollectionResetter resetter;
 
+    private final TestBedMetrics metrics = new TestBedMetrics();
+
+    /**
+     * Starts an embedded mongod on a free port
+     */
     public static MongoManager mongoFlapdoodle() {
-        return new MongoManager(DEFAULT_PORT);
+        return new MongoManager(freePort(), null);
     }
 
     public static MongoManager mongoFlapdoodle(int port) {
-        return new MongoManager(port);
+        return new MongoManager(port, null);
+    }
+
+    /**
+     * Starts an embedded mongod on a free port keeping its data files on RAM-backed storage (see {@link FastStorage}).
+     * The data directory is deleted when the manager is stopped.
+     */
+    public static MongoManager mongoFlapdoodleFastStorage() {
+        return new MongoManager(freePort(), FastStorage.createDataDirectory());
     }
 
-    private MongoManager(int port) {
+    /**
+     * @param dataDirectory removed on {@link #stop()}, {@code null} for a temporary directory managed by flapdoodle
+     */
+    private MongoManager(int port, File dataDirectory) {
 
         logger.debug("Starting Mongo-TestBed coordinator ...");
         try {
 
-            MongodStarter runtime = MongodStarter.getDefaultInstance();
-            mongodExe = runtime.prepare(new MongodConfig(Version.V2_2_0, port, Network.localhostIsIPv6()));
+            long startedAt = System.nanoTime();
+            CachingMongodStarter runtime = CachingMongodStarter.getDefaultInstance();
+            // flapdoodle always runs mongod without journal and preallocation
+            this.dataDirectory = dataDirectory;
+            mongodExe = runtime.prepare(dataDirectory == null
+                    ? new MongodConfig(Version.V2_2_0, port, Network.localhostIsIPv6())
+                    : new MongodConfig(Version.V2_2_0, port, Network.localhostIsIPv6(), dataDirectory.getAbsolutePath()));
+            metrics.record(Phase.PROCESS_START, null, startedAt);
+            long readinessStart = System.nanoTime();
             mongod = mongodExe.start();
+            metrics.record(Phase.READINESS, null, readinessStart);
+            startupTimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            logger.info("Mongo TestBed mongod ready after {} ms", startupTimeMillis);
 
-            mongo = new Mongo(DEFAULT_HOST, DEFAULT_PORT);
+            long connectStart = System.nanoTime();
+            mongo = new Mongo(DEFAULT_HOST, port);
             logger.debug("Mongo TestBed process {} created.", MONGODB_TESTBED_INSTANCE);
-            mongoDB = mongo.getDB(MONOGO_TESTBED_DB);
-            logger.debug("Mongo TestBed database {} created.", MONOGO_TESTBED_DB);
+            mongoDB = mongo.getDB(TestBedNames.databaseName());
+            metrics.record(Phase.CONNECT, null, connectStart);
+            logger.debug("Mongo TestBed database {} created.", mongoDB.getName());
         } catch (UnknownHostException e) {
             logger.error("Unable to start mongo due to an exception!", e);
         } catch (IOException e) {
@@ -103,8 +154,164 @@ public class MongoManager implements TestRule {
         }
     }
 
+    /**
+     * Takes an already running embedded mongod from a JVM-wide pool which is topped up in the background. The mongod is
+     * exclusive to this manager and stopped with it. Call {@link #warmUpPool()} early, e.g. from a suite, to have the
+     * first test class find a running mongod as well.
+     *
+     * @throws IllegalStateException in case no mongod can be started
+     */
+    public static MongoManager mongoFlapdoodlePooled() {
+        long startedAt = System.nanoTime();
+        MongodPool.Instance instance;
+        try {
+            instance = MongodPool.take();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to take a pooled mongod", e);
+        }
+        return new MongoManager(instance, System.nanoTime() - startedAt);
+    }
+
+    /**
+     * Starts the idle mongods of the pool used by {@link #mongoFlapdoodlePooled()} in the background
+     */
+    public static void warmUpPool() {
+        MongodPool.fill();
+    }
+
+    /**
+     * @param takeNanos the time it took to take the {@code instance} from the pool
+     */
+    private MongoManager(MongodPool.Instance instance, long takeNanos) {
+        mongodExe = instance.executable;
+        mongod = instance.process;
+        metrics.recordDuration(Phase.READINESS, null, takeNanos, PhaseTiming.UNKNOWN, PhaseTiming.UNKNOWN);
+        startupTimeMillis = TimeUnit.NANOSECONDS.toMillis(takeNanos);
+        logger.info("Mongo TestBed took pooled mongod after {} ms", startupTimeMillis);
+        try {
+            long connectStart = System.nanoTime();
+            mongo = new Mongo(DEFAULT_HOST, instance.port);
+            mongoDB = mongo.getDB(TestBedNames.databaseName());
+            metrics.record(Phase.CONNECT, null, connectStart);
+            logger.debug("Mongo TestBed database {} created on pooled mongod.", mongoDB.getName());
+        } catch (IOException e) {
+            logger.error("Unable to connect to the pooled mongo due to an exception!", e);
+            stop();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Use this method to share a single embedded mongod among all test classes running in the JVM. Each manager gets
+     * a database of its own which is dropped when the manager is stopped.
+     *
+     * @return a manager using the JVM-wide mongod
+     * @throws IllegalStateException in case the shared mongod cannot be started
+     */
+    public static MongoManager mongoFlapdoodleShared() {
+        int port;
+        try {
+            port = SharedMongod.acquire();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to start the shared mongod", e);
+        }
+        return new MongoManager(SharedMongod.nextDatabaseName(), port);
+    }
+
+    /**
+     * @param sharedPort of the shared mongod, already acquired for this manager and released on {@link #stop()}
+     */
+    private MongoManager(String databaseName, int sharedPort) {
+        shared = true;
+        try {
+            long connectStart = System.nanoTime();
+            mongo = new Mongo(DEFAULT_HOST, sharedPort);
+            mongoDB = mongo.getDB(databaseName);
+            metrics.record(Phase.CONNECT, null, connectStart);
+            logger.debug("Mongo TestBed database {} created on shared mongod.", mongoDB.getName());
+        } catch (IOException e) {
+            logger.error("Unable to connect to the shared mongo due to an exception!", e);
+            stop();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Use this method to share warm mongods among all test JVMs of a build, e.g. all surefire forks. Each manager leases
+     * a database of its own from the {@link MongoBroker}, which is started on first use and drops the database once the
+     * manager is stopped.
+     *
+     * @return a manager using a brokered mongod
+     * @throws IllegalStateException in case the broker can neither be reached nor started
+     */
+    public static MongoManager mongoBroker() {
+        long startedAt = System.nanoTime();
+        BrokerLease lease;
+        try {
+            lease = BrokerLease.lease(MongoBroker.directory(), BrokerLease.DEFAULT_STARTUP_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to lease a brokered mongo database", e);
+        }
+        return new MongoManager(lease, System.nanoTime() - startedAt);
+    }
+
+    /**
+     * @param leaseNanos the time it took to obtain the {@code lease}, released on {@link #stop()}
+     */
+    private MongoManager(BrokerLease lease, long leaseNanos) {
+        this.lease = lease;
+        metrics.recordDuration(Phase.READINESS, null, leaseNanos, PhaseTiming.UNKNOWN, PhaseTiming.UNKNOWN);
+        startupTimeMillis = TimeUnit.NANOSECONDS.toMillis(leaseNanos);
+        logger.info("Mongo TestBed leased a brokered database after {} ms", startupTimeMillis);
+        try {
+            long connectStart = System.nanoTime();
+            mongo = new Mongo(DEFAULT_HOST, lease.getPort());
+            mongoDB = mongo.getDB(lease.getDatabaseName());
+            metrics.record(Phase.CONNECT, null, connectStart);
+            logger.debug("Mongo TestBed database {} leased on brokered mongod.", mongoDB.getName());
+        } catch (IOException e) {
+            logger.error("Unable to connect to the brokered mongo database due to an exception!", e);
+            stop();
+            throw new IllegalStateException(e);
+        }
+    }
+
     public static MongoManager mongoStartLocal(String command, final String dbpath) {
-        return new MongoManager(command, dbpath);
+        return new MongoManager(command, dbpath, LocalMongoProcess.DEFAULT_STARTUP_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Use this method to run mongoDB via system command on a free port, without journal and preallocation and keeping
+     * its data files on RAM-backed storage (see {@link FastStorage}). The data directory is deleted when the manager is
+     * stopped.
+     *
+     * @param command path to the mongod executable
+     * @throws IllegalStateException in case mongod exits or is not ready in time
+     */
+    public static MongoManager mongoStartLocalFastStorage(String command) {
+        File dataDirectory = FastStorage.createDataDirectory();
+        MongoManager manager = new MongoManager(command, dataDirectory.getAbsolutePath(),
+                LocalMongoProcess.DEFAULT_STARTUP_TIMEOUT_MILLIS, FastStorage.MONGOD_OPTIONS);
+        manager.dataDirectory = dataDirectory;
+        return manager;
+    }
+
+    /**
+     * Use this method to run mongoDB via system command on a free port, waiting at most {@code startupTimeoutMillis} for it to accept
+     * connections
+     *
+     * @param command              path to the mongod executable
+     * @param dbpath               directory for datafiles, a sub-directory per fork and thread is used when running
+     *                             in parallel (see {@link TestBedNames})
+     * @param startupTimeoutMillis deadline for mongod to become ready
+     * @throws IllegalStateException in case mongod exits or is not ready in time
+     */
+    public static MongoManager mongoStartLocal(String command, String dbpath, long startupTimeoutMillis) {
+        return new MongoManager(command, dbpath, startupTimeoutMillis);
+    }
+
+    private MongoManager(final String command, final String dbpath, long startupTimeoutMillis) {
+        this(command, isolatedDbpath(dbpath), startupTimeoutMillis, new String[0]);
     }
 
     /**
@@ -112,38 +319,126 @@ public class MongoManager implements TestRule {
      *
      * @param command
      * @param dbpath  directory for datafiles
+     * @param startupTimeoutMillis deadline for mongod to become ready
+     * @param options additional mongod options
      */
-    private MongoManager(final String command, final String dbpath) {
+    private MongoManager(final String command, final String dbpath, long startupTimeoutMillis, String[] options) {
         try {
+            int port = freePort();
+            localMongod = LocalMongoProcess.mongod(command, port, dbpath, options);
+            localMongod.start(startupTimeoutMillis);
+            startupTimeMillis = localMongod.getStartupTimeMillis();
+            metrics.recordDuration(Phase.PROCESS_START, null, localMongod.getLaunchNanos(), PhaseTiming.UNKNOWN, PhaseTiming.UNKNOWN);
+            metrics.recordDuration(Phase.READINESS, null, localMongod.getReadinessNanos(), PhaseTiming.UNKNOWN, PhaseTiming.UNKNOWN);
+
+            long connectStart = System.nanoTime();
+            mongo = new Mongo(DEFAULT_HOST, port);
+            logger.debug("Mongo TestBed process {} created.", MONGODB_TESTBED_INSTANCE);
+            mongoDB = mongo.getDB(TestBedNames.databaseName());
+            metrics.record(Phase.CONNECT, null, connectStart);
+            logger.debug("Mongo TestBed database {} created.", mongoDB.getName());
+        } catch (IOException e) {
+            logger.error("Could not start external mongo process due to an exception!", e);
+        }
+    }
 
-            externalMongoThread = executorService.submit(new Runnable() { //TODO externalize into a separate class
-                @Override
-                public void run() {
-                    try {
-                        ProcessBuilder processBuilder = new ProcessBuilder(command, "--port", String.valueOf(DEFAULT_PORT), "--dbpath", dbpath);
-                        processBuilder.directory(new File("target"));
-                        processBuilder.redirectErrorStream(true);
-                        process = processBuilder.start();
+    /**
+     * Use this method to run a replica set of {@code members} embedded mongods, all started from the binary extracted
+     * by flapdoodle. The manager connects to the whole set, hence reads and writes follow the primary.
+     *
+     * @param members positive number of replica set members
+     * @throws IllegalStateException in case the replica set does not elect a primary in time
+     */
+    public static MongoManager mongoReplicaSet(int members) {
+        MongodExecutable executable;
+        try {
+            executable = CachingMongodStarter.getDefaultInstance().prepare(new MongodConfig(Version.V2_2_0, freePort(), Network.localhostIsIPv6()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to extract the embedded mongod", e);
+        }
+        String command = executable.getFile().getAbsolutePath();
+        return new MongoManager(new ReplicaSet(command, FastStorage.parentDirectory().getPath(), ReplicaSet.DEFAULT_NAME, members),
+                executable, LocalMongoProcess.DEFAULT_STARTUP_TIMEOUT_MILLIS);
+    }
 
-                        BufferedReader bufferedInputStream = new BufferedReader(new InputStreamReader(process.getInputStream()));
+    /**
+     * Use this method to run a replica set of {@code members} mongods via system command
+     *
+     * @param command path to the mongod executable
+     * @param dbpath  directory in which a fresh data directory of the set is created, deleted on {@link #stop()}
+     * @param members positive number of replica set members
+     * @throws IllegalStateException in case the replica set does not elect a primary in time
+     */
+    public static MongoManager mongoReplicaSet(String command, String dbpath, int members) {
+        return new MongoManager(new ReplicaSet(command, dbpath, ReplicaSet.DEFAULT_NAME, members),
+                null, LocalMongoProcess.DEFAULT_STARTUP_TIMEOUT_MILLIS);
+    }
 
-                        String line;
-                        while ((line = bufferedInputStream.readLine()) != null && !Thread.interrupted()) {
-                            System.out.println("Mongo DB: " + line);
-                        }
+    /**
+     * Use this method to run a sharded cluster via system commands: a config server, {@code shards} shard mongods and a
+     * mongos the manager connects to. Collections declaring a {@link MongoTestBedCollection#shardKey()} are sharded
+     * and pre-split before they are seeded.
+     *
+     * @param mongodCommand path to the mongod executable
+     * @param mongosCommand path to the mongos executable
+     * @param dbpath        directory in which a fresh data directory of the cluster is created, deleted on
+     *                      {@link #stop()}
+     * @param shards        positive number of shards
+     * @throws IllegalStateException in case the cluster is not ready in time
+     */
+    public static MongoManager mongoShardedCluster(String mongodCommand, String mongosCommand, String dbpath, int shards) {
+        return new MongoManager(new ShardedCluster(mongodCommand, mongosCommand, dbpath, shards, 1),
+                null, LocalMongoProcess.DEFAULT_STARTUP_TIMEOUT_MILLIS);
+    }
 
-                    } catch (IOException e) {
-                        logger.error("Could not start external mongo process due to an exception!", e);
-                    }
-                }
-            });
+    /**
+     * @param executable the flapdoodle executable whose binary the topology runs, {@code null} for system commands
+     */
+    private MongoManager(MongoTopology topology, MongodExecutable executable, long startupTimeoutMillis) {
+        this.topology = topology;
+        this.mongodExe = executable;
+        try {
+            long startedAt = System.nanoTime();
+            topology.start(startupTimeoutMillis);
+            metrics.record(Phase.READINESS, null, startedAt);
+            startupTimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            logger.info("Mongo TestBed topology ready after {} ms", startupTimeMillis);
+
+            long connectStart = System.nanoTime();
+            List<ServerAddress> seeds = topology.getSeeds();
+            // a single seed, i.e. a mongos, is connected to directly instead of being probed as replica set
+            mongo = seeds.size() == 1 ? new Mongo(seeds.get(0)) : new Mongo(seeds);
+            mongoDB = mongo.getDB(TestBedNames.databaseName());
+            metrics.record(Phase.CONNECT, null, connectStart);
+            logger.debug("Mongo TestBed database {} created.", mongoDB.getName());
+        } catch (IOException e) {
+            logger.error("Unable to start mongo topology due to an exception!", e);
+            stop();
+            throw new IllegalStateException(e);
+        } catch (RuntimeException e) {
+            stop();
+            throw e;
+        }
+    }
 
-            mongo = new Mongo(DEFAULT_HOST, DEFAULT_PORT);
-            logger.debug("Mongo TestBed process {} created.", MONGODB_TESTBED_INSTANCE);
-            mongoDB = mongo.getDB(MONOGO_TESTBED_DB);
-            logger.debug("Mongo TestBed database {} created.", MONOGO_TESTBED_DB);
+    private static String isolatedDbpath(String dbpath) {
+        String suffix = TestBedNames.isolationSuffix();
+        if (suffix.length() == 0) {
+            return dbpath;
+        }
+        File directory = new File(dbpath, "testbed" + suffix);
+        File resolved = directory.isAbsolute() ? directory : new File(LocalMongoProcess.WORKING_DIRECTORY, directory.getPath());
+        if (!resolved.isDirectory() && !resolved.mkdirs()) {
+            throw new IllegalStateException("Unable to create data directory " + resolved);
+        }
+        return directory.getPath();
+    }
+
+    private static int freePort() {
+        try {
+            return Network.getFreeServerPort();
         } catch (IOException e) {
-            logger.error("Could not start external mongo process due to an exception!", e);
+            throw new IllegalStateException("Unable to find a free port for mongo", e);
         }
     }
 
@@ -169,112 +464,362 @@ public class MongoManager implements TestRule {
      */
     private MongoManager(String uri) {
         MongoURI mongoURI = new MongoURI(uri);
+        long connectStart = System.nanoTime();
         try {
             this.mongo = mongoURI.connect();
         } catch (UnknownHostException e) {
             logger.error("Could not connect to {} due to an exception!", uri, e);
             throw new IllegalStateException(e);
         }
-        this.mongoDB = mongo.getDB(MONOGO_TESTBED_DB);
+        this.mongoDB = mongo.getDB(TestBedNames.databaseName());
         if (mongoURI.getUsername() != null) {
             this.mongoDB.authenticate(mongoURI.getUsername(), mongoURI.getPassword());
         }
+        metrics.record(Phase.CONNECT, null, connectStart);
     }
 
-    @Override
-    public Statement apply(final Statement base, Description description) {
+    /**
+     * Sets the number of documents sent to mongo in a single insert while filling the annotated collections
+     *
+     * @param batchSize positive number of documents per insert
+     * @return this manager
+     */
+    public MongoManager withBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be positive but was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
 
+    /**
+     * Sets the maximum number of annotated collections seeded concurrently
+     *
+     * @param seedingThreads positive number of worker threads
+     * @return this manager
+     */
+    public MongoManager withSeedingThreads(int seedingThreads) {
+        if (seedingThreads < 1) {
+            throw new IllegalArgumentException("Seeding threads should be positive but was " + seedingThreads);
+        }
+        this.seedingThreads = seedingThreads;
+        return this;
+    }
 
-        Field[] declaredFields = description.getTestClass().getDeclaredFields();
-        for (Field field : declaredFields) {
-            if (field.isAnnotationPresent(MongoTestBedCollection.class)) {
-                MongoTestBedCollection annotation = field.getAnnotation(MongoTestBedCollection.class);
-                String location = annotation.location();
-                String name = annotation.name();
-                if (mongoDB.collectionExists(name)) {
-                    logger.debug("Dropping already existing mongo collection {}", name);
-                    mongoDB.getCollection(name).drop();
-                }
-                DBCollection collection = mongoDB.createCollection(name, new BasicDBObject());
-                fill(collection, location);
-                field(field.getName()).ofType(DBCollection.class).in(description.getTestClass()).set(collection);
-            }
+    /**
+     * Keeps a pristine template copy of every seeded collection, tagged with the content hash of its fixture, and
+     * recreates the collection through a raw copy of the template as long as the fixture does not change.
+     * Useful against a persistent {@code dbpath} or a connected server.
+     *
+     * @return this manager
+     */
+    public MongoManager withFixtureCache() {
+        this.fixtureCache = true;
+        return this;
+    }
 
-            if (field.isAnnotationPresent(Inject.class)) {
-                if (field.getType() == Mongo.class) {
-                    field(field.getName()).ofType(Mongo.class).in(description.getTestClass()).set(mongo);
-                } else if (field.getType() == DB.class) {
-                    field(field.getName()).ofType(DB.class).in(description.getTestClass()).set(mongoDB);
-                }
-            }
+    /**
+     * Compiles the JSON fixtures into binary BSON files on first use (see {@link FixtureCompiler}) and loads them by
+     * memory-mapping the compiled files, skipping the JSON parsing on every subsequent run
+     *
+     * @return this manager
+     */
+    public MongoManager withCompiledFixtures() {
+        this.compiledFixtures = true;
+        return this;
+    }
+
+    /**
+     * Seeds only the annotated collections used by the tests about to run, as declared through {@link MongoTestBedUses},
+     * so that the fixtures of unused collections are never loaded, e.g. when running a single test method. The fields
+     * of the collections which are not seeded stay {@code null}, hence a collection field which no test method of the
+     * class declares fails the setup as soon as every test method declares the collections it uses.
+     *
+     * @return this manager
+     */
+    public MongoManager withLazySeeding() {
+        this.lazySeeding = true;
+        return this;
+    }
+
+    /**
+     * Keeps a pristine server-side copy and the state of every seeded collection, so that {@link #resetRule()} can
+     * restore only the collections a test changed
+     *
+     * @return this manager
+     */
+    public MongoManager withPerTestReset() {
+        this.perTestReset = true;
+        return this;
+    }
+
+    /**
+     * Use the returned rule as method-level {@code @Rule} next to this manager as {@code @ClassRule}. After each test it
+     * compares the state of the seeded collections on the server and recreates the changed ones from their pristine
+     * copies.
+     *
+     * @throws IllegalStateException in case {@link #withPerTestReset()} was not called
+     */
+    public TestRule resetRule() {
+        if (!perTestReset) {
+            throw new IllegalStateException("Per-test reset requires MongoManager.withPerTestReset()");
         }
+        return new TestRule() {
+            @Override
+            public Statement apply(final Statement base, Description description) {
+                return new Statement() {
+                    @Override
+                    public void evaluate() throws Throwable {
+                        try {
+                            base.evaluate();
+                        } finally {
+                            if (resetter != null) {
+                                resetter.resetDirtyCollections();
+                            }
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Use the returned rule as method-level {@code @Rule} next to this manager as {@code @ClassRule}. It profiles every
+     * operation on the testbed database during each test, see {@link QueryProfiler#profile()} for the assertions.
+     */
+    public QueryProfiler profiler() {
+        return new QueryProfiler(mongoDB);
+    }
+
+    /**
+     * @return a driver running a concurrent operation mix, typically against the injected collections, and reporting
+     * throughput and latency percentiles per operation
+     */
+    public LoadDriver loadDriver() {
+        return new LoadDriver();
+    }
 
+    /**
+     * Registers a listener receiving the timing of every testbed phase, see {@link Phase}. Phases which already ran,
+     * such as starting mongo, are reported as well.
+     *
+     * @return this manager
+     */
+    public MongoManager withListener(TestBedListener listener) {
+        metrics.addListener(listener);
+        return this;
+    }
+
+    @Override
+    public Statement apply(final Statement base, final Description description) {
         return new Statement() {
             @Override
             public void evaluate() throws Throwable {
+                metrics.testClassStarted(description.getClassName());
                 try {
-
+                    prepare(description);
                     base.evaluate();
                 } finally {
                     logger.debug("Stopping Mongo TestBed ...");
-                    stop();
-
+                    try {
+                        if (resetter != null) {
+                            resetter.dropPristineCopies();
+                            resetter = null;
+                        }
+                    } finally {
+                        stop();
+                        metrics.testClassFinished();
+                    }
                 }
             }
         };
     }
 
-    public void stop() {
-        //TODO all these ifs should be externalized to a strategy map
-        if (process != null) {
-            logger.debug("Destroying external mongo process ...");
-            process.destroy();
-            executorService.shutdownNow();
+    private void prepare(Description description) throws Throwable {
+        Class<?> testClass = description.getTestClass();
+        List<Field> collectionFields = new ArrayList<Field>();
+        for (Field field : testClass.getDeclaredFields()) {
+            if (field.isAnnotationPresent(MongoTestBedCollection.class)) {
+                collectionFields.add(field);
+            }
         }
 
-        if (mongod != null) {
-            logger.debug("Stopping mongod ...");
-            mongod.stop();
+        CollectionSeeder seeder = new CollectionSeeder(mongoDB, seedingThreads, batchSize,
+                fixtureCache ? new FixtureCache(mongoDB) : null, compiledFixtures, metrics);
+        if (perTestReset) {
+            resetter = new CollectionResetter(mongoDB, seeder, metrics);
+        }
+        Map<Field, DBCollection> collections = seedEagerly(seeder, lazySeeding ? usedBy(description, collectionFields) : collectionFields);
+        long injectStart = System.nanoTime();
+        for (Map.Entry<Field, DBCollection> collection : collections.entrySet()) {
+            DBCollection injected = collection.getValue();
+            if (resetter != null) {
+                resetter.track(collection.getKey().getAnnotation(MongoTestBedCollection.class), injected.getName());
+            }
+            field(collection.getKey().getName()).ofType(DBCollection.class).in(testClass).set(injected);
         }
 
-        if (mongodExe != null) {
-            logger.debug("Cleaning-up mongo executable ...");
-            mongodExe.cleanup();
+        for (Field field : testClass.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Inject.class)) {
+                if (field.getType() == Mongo.class) {
+                    field(field.getName()).ofType(Mongo.class).in(testClass).set(mongo);
+                } else if (field.getType() == DB.class) {
+                    field(field.getName()).ofType(DB.class).in(testClass).set(mongoDB);
+                }
+            }
         }
+        metrics.record(Phase.INJECT, null, injectStart);
     }
 
-    private void fill(DBCollection collection, String collectionContentFilePath) {
-        StringBuilder stringBuilder = new StringBuilder();
+    private Map<Field, DBCollection> seedEagerly(CollectionSeeder seeder, List<Field> fields) throws Throwable {
+        Map<Field, DBCollection> collections = seeder.seed(fields);
+        if (resetter != null) {
+            for (DBCollection collection : collections.values()) {
+                resetter.keepPristineCopy(collection.getName());
+            }
+        }
+        return collections;
+    }
 
-        try {
-            InputStreamReader inputStreamReader = new InputStreamReader( //
-                    CollectionManager.class.getClassLoader().getResourceAsStream(collectionContentFilePath), "UTF-8");
-            CharBuffer buf = CharBuffer.allocate(BUFFER_SIZE);
-            for (int read = inputStreamReader.read(buf); read != EOF; read = inputStreamReader.read(buf)) {
-                buf.flip();
-                stringBuilder.append(buf, START, read);
+    /**
+     * @return the {@code fields} whose collections are used by the tests about to run, all of them as soon as one of
+     * these tests does not declare {@link MongoTestBedUses}, ignored tests left out
+     * @throws IllegalStateException in case a test declares a collection which is not declared by any field, or every
+     *                               test method of the class declares its collections but none the one of a field
+     */
+    static List<Field> usedBy(Description description, List<Field> fields) {
+        Map<String, Field> fieldsByName = new LinkedHashMap<String, Field>();
+        for (Field field : fields) {
+            fieldsByName.put(field.getAnnotation(MongoTestBedCollection.class).name(), field);
+        }
+        verifyDeclared(description.getTestClass(), fieldsByName);
+        Set<String> used = new HashSet<String>();
+        List<Description> pending = new ArrayList<Description>(description.getChildren());
+        while (!pending.isEmpty()) {
+            Description child = pending.remove(pending.size() - 1);
+            if (!child.isTest()) {
+                pending.addAll(child.getChildren());
+                continue;
+            }
+            if (child.getAnnotation(Ignore.class) != null) {
+                continue;
+            }
+            MongoTestBedUses uses = child.getAnnotation(MongoTestBedUses.class);
+            if (uses == null) {
+                return fields;
+            }
+            for (String name : uses.value()) {
+                if (!fieldsByName.containsKey(name)) {
+                    throw new IllegalStateException("Test " + child.getDisplayName() + " uses mongo collection " + name
+                            + " which is not declared by any field!");
+                }
+                used.add(name);
+            }
+        }
+        List<Field> usedFields = new ArrayList<Field>();
+        for (Map.Entry<String, Field> field : fieldsByName.entrySet()) {
+            if (used.contains(field.getKey())) {
+                usedFields.add(field.getValue());
+            }
+        }
+        return usedFields;
+    }
 
+    /**
+     * Makes sure that a field left {@code null} because no test declares its collection is reported at setup instead of
+     * failing a test which forgot to declare it with a {@link NullPointerException}
+     */
+    private static void verifyDeclared(Class<?> testClass, Map<String, Field> fieldsByName) {
+        Set<String> declared = new HashSet<String>();
+        for (Method method : testClass.getMethods()) {
+            if (!method.isAnnotationPresent(Test.class)) {
+                continue;
+            }
+            MongoTestBedUses uses = method.getAnnotation(MongoTestBedUses.class);
+            if (uses == null) {
+                // such a test uses every collection, hence seeds every field whenever it runs
+                return;
+            }
+            declared.addAll(Arrays.asList(uses.value()));
+        }
+        for (Map.Entry<String, Field> field : fieldsByName.entrySet()) {
+            if (!declared.contains(field.getKey())) {
+                throw new IllegalStateException("Field " + field.getValue().getName() + " of " + testClass.getName()
+                        + " holds mongo collection " + field.getKey() + " which no test declares through @"
+                        + MongoTestBedUses.class.getSimpleName() + ", hence it would always be null!");
             }
-        } catch (IOException e) {
-            logger.error("Unable to read input stream due to an exception!", e);
-            throw new IllegalStateException(e);
         }
+    }
 
-        BasicDBList parse = (BasicDBList) JSON.parse(stringBuilder.toString(), new MongoIdTransformerJSONCallback());
-        collection.insert(parse.toArray(new DBObject[parse.size()]));
+    /**
+     * @return the time it took the mongo process of this manager to accept connections or -1 in case this manager did
+     * not start a process
+     */
+    public long getStartupTimeMillis() {
+        return startupTimeMillis;
     }
 
-    private static class MongoIdTransformerJSONCallback extends JSONCallback {
+    public void stop() {
+        //TODO all these ifs should be externalized to a strategy map
+        long stopStart = System.nanoTime();
+        if (shared) {
+            logger.debug("Releasing shared mongod ...");
+            try {
+                if (mongoDB != null) {
+                    mongoDB.dropDatabase();
+                }
+                if (mongo != null) {
+                    mongo.close();
+                }
+            } finally {
+                shared = false;
+                SharedMongod.release();
+            }
+        }
+
+        if (lease != null) {
+            logger.debug("Releasing brokered database ...");
+            if (mongo != null) {
+                mongo.close();
+            }
+            lease.release();
+            lease = null;
+        }
 
-        private static final String MONGO_ID_KEY = "_id";
+        if (localMongod != null) {
+            logger.debug("Destroying external mongo process ...");
+            localMongod.stop();
+        }
 
-        @Override
-        public Object objectDone() {
-            BSONObject b = (BSONObject) super.objectDone();
-            if (b.containsField(MONGO_ID_KEY) && b.get(MONGO_ID_KEY) instanceof String) {
-                b.put(MONGO_ID_KEY, new ObjectId(b.get(MONGO_ID_KEY).toString()));
+        if (topology != null) {
+            logger.debug("Stopping mongo topology ...");
+            if (mongo != null) {
+                mongo.close();
             }
-            return b;
+            topology.stop();
+            topology = null;
+        }
+
+        if (mongod != null) {
+            logger.debug("Stopping mongod ...");
+            mongod.stop();
+        }
+
+        metrics.record(Phase.STOP, null, stopStart);
+
+        if (mongodExe != null) {
+            logger.debug("Cleaning-up mongo executable ...");
+            long cleanupStart = System.nanoTime();
+            mongodExe.cleanup();
+            metrics.record(Phase.CLEANUP, null, cleanupStart);
+        }
+
+        if (dataDirectory != null) {
+            logger.debug("Deleting mongo data directory {} ...", dataDirectory);
+            long cleanupStart = System.nanoTime();
+            FastStorage.delete(dataDirectory);
+            dataDirectory = null;
+            metrics.record(Phase.CLEANUP, null, cleanupStart);
         }
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.ingini.monogo.testbed.process.CachingMongodStarter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A JVM-wide pool of pre-started embedded mongods used by {@link MongoManager#mongoFlapdoodlePooled()}. Every taken
+ * mongod is handed out exclusively and stopped afterwards; the pool is topped up in the background right away, so the
+ * next test class finds a running mongod. Idle mongods are stopped when the JVM exits.
+ * <p>The number of idle mongods can be changed through the {@value #SIZE_PROPERTY} system property.</p>
+ */
+final class MongodPool {
+
+    static final String SIZE_PROPERTY = "mongo.testbed.pool.size";
+    private static final int DEFAULT_SIZE = 2;
+
+    private static final Logger logger = LoggerFactory.getLogger(MongodPool.class);
+
+    private static final BlockingQueue<Instance> idle = new LinkedBlockingQueue<Instance>();
+    private static final AtomicInteger starting = new AtomicInteger();
+    private static final ExecutorService starter = Executors.newCachedThreadPool(new ThreadFactory() {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "mongo-testbed-pool-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static boolean shutdownHookInstalled;
+
+    /**
+     * A started mongod owned by a single manager
+     */
+    static final class Instance {
+
+        final MongodExecutable executable;
+        final MongodProcess process;
+        final int port;
+
+        private Instance(MongodExecutable executable, MongodProcess process, int port) {
+            this.executable = executable;
+            this.process = process;
+            this.port = port;
+        }
+    }
+
+    private MongodPool() {
+    }
+
+    /**
+     * Takes an idle mongod, starting one in case the pool is empty, and tops up the pool in the background
+     */
+    static Instance take() throws IOException {
+        installShutdownHook();
+        Instance instance = idle.poll();
+        if (instance == null || !isAlive(instance)) {
+            logger.debug("No idle mongod in the pool, starting one ...");
+            instance = start();
+        }
+        fill();
+        logger.debug("Took mongod on port {} from the pool", instance.port);
+        return instance;
+    }
+
+    /**
+     * Starts idle mongods in the background up to the pool size
+     */
+    static synchronized void fill() {
+        installShutdownHook();
+        int size = Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE);
+        while (idle.size() + starting.get() < size) {
+            starting.incrementAndGet();
+            starter.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        idle.add(start());
+                    } catch (IOException e) {
+                        logger.error("Unable to start a pooled mongod due to an exception!", e);
+                    } finally {
+                        starting.decrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    private static Instance start() throws IOException {
+        int port = Network.getFreeServerPort();
+        MongodExecutable executable = CachingMongodStarter.getDefaultInstance()
+                .prepare(new MongodConfig(Version.V2_2_0, port, Network.localhostIsIPv6()));
+        return new Instance(executable, executable.start(), port);
+    }
+
+    private static boolean isAlive(Instance instance) {
+        try {
+            new Socket(MongoManager.DEFAULT_HOST, instance.port).close();
+            return true;
+        } catch (IOException e) {
+            logger.warn("Discarding pooled mongod on port {} which stopped accepting connections", instance.port);
+            return false;
+        }
+    }
+
+    private static synchronized void installShutdownHook() {
+        if (shutdownHookInstalled) {
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread("mongo-testbed-pool-shutdown") {
+            @Override
+            public void run() {
+                starter.shutdownNow();
+                for (Instance instance = idle.poll(); instance != null; instance = idle.poll()) {
+                    logger.debug("Stopping idle pooled mongod on port {} ...", instance.port);
+                    instance.process.stop();
+                }
+            }
+        });
+        shutdownHookInstalled = true;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.ingini.monogo.testbed.process.CachingMongodStarter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A JVM-wide embedded mongod shared by all {@link MongoManager}s created through
+ * {@link MongoManager#mongoFlapdoodleShared()}. The first user starts the process and every user gets a database
+ * of its own. Once the last user releases the process it is kept alive for a short linger period, so that the next
+ * test class can pick it up, and then stopped. The process is also stopped when the JVM exits.
+ * <p>The linger period (in milliseconds) can be changed through the {@value #LINGER_PROPERTY} system property.</p>
+ */
+final class SharedMongod {
+
+    static final String LINGER_PROPERTY = "mongo.testbed.shared.linger";
+    private static final long DEFAULT_LINGER_MILLIS = 5000;
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedMongod.class);
+
+    private static final AtomicInteger databases = new AtomicInteger();
+    private static final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "mongo-testbed-shared-reaper");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static MongodExecutable mongodExe;
+    private static MongodProcess mongod;
+    private static int port;
+    private static int users;
+    private static ScheduledFuture<?> pendingStop;
+    private static boolean shutdownHookInstalled;
+
+    private SharedMongod() {
+    }
+
+    /**
+     * Registers a new user of the shared process, starting it if necessary
+     *
+     * @return the port the shared process listens to
+     */
+    static synchronized int acquire() throws IOException {
+        if (pendingStop != null) {
+            pendingStop.cancel(false);
+            pendingStop = null;
+        }
+        if (mongod == null) {
+            start();
+        }
+        users++;
+        logger.debug("Shared mongod on port {} acquired, {} user(s)", port, users);
+        return port;
+    }
+
+    /**
+     * Unregisters a user of the shared process. The process is stopped after the linger period unless a new user
+     * acquires it in the meantime.
+     */
+    static synchronized void release() {
+        if (users == 0) {
+            return;
+        }
+        users--;
+        logger.debug("Shared mongod on port {} released, {} user(s) left", port, users);
+        if (users == 0) {
+            pendingStop = reaper.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    stopIfUnused();
+                }
+            }, Long.getLong(LINGER_PROPERTY, DEFAULT_LINGER_MILLIS), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return a database name which is unique within the JVM
+     */
+    static String nextDatabaseName() {
+        return MongoManager.MONOGO_TESTBED_DB + "_" + databases.incrementAndGet();
+    }
+
+    private static void start() throws IOException {
+        port = Network.getFreeServerPort();
+        logger.debug("Starting shared mongod on port {} ...", port);
+        mongodExe = CachingMongodStarter.getDefaultInstance().prepare(new MongodConfig(Version.V2_2_0, port, Network.localhostIsIPv6()));
+        mongod = mongodExe.start();
+
+        if (!shutdownHookInstalled) {
+            Runtime.getRuntime().addShutdownHook(new Thread("mongo-testbed-shared-shutdown") {
+                @Override
+                public void run() {
+                    stopNow();
+                }
+            });
+            shutdownHookInstalled = true;
+        }
+    }
+
+    private static synchronized void stopIfUnused() {
+        pendingStop = null;
+        if (users == 0) {
+            stopNow();
+        }
+    }
+
+    private static synchronized void stopNow() {
+        if (mongod != null) {
+            logger.debug("Stopping shared mongod on port {} ...", port);
+            mongod.stop();
+            mongod = null;
+        }
+        if (mongodExe != null) {
+            logger.debug("Cleaning-up shared mongo executable ...");
+            mongodExe.cleanup();
+            mongodExe = null;
+        }
+    }
+}
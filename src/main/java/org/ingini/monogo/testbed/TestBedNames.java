@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Derives database names and data directories which do not collide when tests run in several surefire forks or in
+ * parallel threads of the same fork.
+ * <p>The fork is identified by the {@value #FORK_PROPERTY} system property, falling back to
+ * {@value #SUREFIRE_FORK_PROPERTY}. Surefire does not set either of them by itself, pass the fork number through
+ * {@code <systemPropertyVariables><surefire.forkNumber>${surefire.forkNumber}</surefire.forkNumber></systemPropertyVariables>}.
+ * Every thread creating a manager gets a slot of its own; the first thread keeps the plain names, hence a sequential
+ * run in a single fork uses exactly the same names as before.</p>
+ */
+public final class TestBedNames {
+
+    public static final String FORK_PROPERTY = "mongo.testbed.fork";
+    public static final String SUREFIRE_FORK_PROPERTY = "surefire.forkNumber";
+
+    private static final AtomicInteger slots = new AtomicInteger();
+    private static final ThreadLocal<Integer> threadSlot = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return slots.getAndIncrement();
+        }
+    };
+
+    private TestBedNames() {
+    }
+
+    /**
+     * @return the testbed database name for the current fork and thread
+     */
+    public static String databaseName() {
+        return MongoManager.MONOGO_TESTBED_DB + isolationSuffix();
+    }
+
+    /**
+     * @return a suffix unique to the current fork and thread, empty for the first thread of an unnumbered fork
+     */
+    public static String isolationSuffix() {
+        StringBuilder suffix = new StringBuilder();
+        String fork = System.getProperty(FORK_PROPERTY, System.getProperty(SUREFIRE_FORK_PROPERTY));
+        if (fork != null && fork.length() > 0) {
+            suffix.append("_f").append(fork.replaceAll("[^A-Za-z0-9]", ""));
+        }
+        int slot = threadSlot.get();
+        if (slot > 0) {
+            suffix.append("_t").append(slot);
+        }
+        return suffix.toString();
+    }
+}
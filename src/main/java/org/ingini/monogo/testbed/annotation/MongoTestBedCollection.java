@@ -23,7 +23,8 @@ import java.lang.annotation.Target;
 /**
  * Use this annotation on a public static field (class instance variable).
  * Mongo-TestBed will insert the JSON file specified at {@code location} parameter in mongo database under name
- * given through the {@code name} parameter
+ * given through the {@code name} parameter. Besides a JSON array of documents, the file may hold newline-delimited
+ * (Extended) JSON as written by {@code mongoexport} or a {@code .bson} dump, each optionally gzip-compressed.
  * <p>Example:</p>
  * <p>@MongoTestBedCollection(name = "test_collection", location = "test_collection.json")</p>
  * <p>public static DBCollection collection;</p>
@@ -37,4 +38,46 @@ public @interface MongoTestBedCollection {
 
     String location();
 
+    /**
+     * Documents per insert, zero or less for the batch size of the {@code MongoManager}
+     */
+    int batchSize() default 0;
+
+    /**
+     * Name of the {@code com.mongodb.WriteConcern} used while loading, e.g. {@code NONE} or {@code NORMAL}. Empty for
+     * the write concern of the collection. The load always ends with an acknowledged barrier and the count of the
+     * collection is checked against the loaded documents, so a failed insert fails the seeding even where the
+     * unacknowledged write concern did not report it.
+     */
+    String writeConcern() default "";
+
+    /**
+     * {@code false} keeps inserting the remaining documents of a batch after a failed one
+     */
+    boolean ordered() default true;
+
+    /**
+     * Number of connections inserting the batches of this collection concurrently
+     */
+    int insertConnections() default 1;
+
+    /**
+     * Number of threads splitting the fixture into byte ranges and each reading, parsing and inserting one range through
+     * a connection of its own. Only uncompressed NDJSON and BSON fixtures on the file system are split, any other
+     * fixture is read by a single thread.
+     */
+    int readers() default 1;
+
+    /**
+     * Indexes built once the fixture is loaded
+     */
+    MongoTestBedIndex[] indexes() default {};
+
+    /**
+     * Shard key as JSON, e.g. <code>{'user_id': 1}</code>, used to shard and pre-split the collection before it is
+     * seeded. Empty keeps the collection unsharded. Ignored, with a warning, when the testbed does not run a sharded
+     * cluster.
+     */
+    String shardKey() default "";
+
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Use this annotation next to {@link MongoTestBedCollection} to generate the collection instead of loading it.
+ * The {@code location} of the collection then points to a single JSON document acting as template, see
+ * {@code org.ingini.monogo.testbed.fixture.DocumentTemplate} for the available field generators.
+ * <p>Example:</p>
+ * <p>@MongoTestBedCollection(name = "big_collection", location = "big_collection_template.json")</p>
+ * <p>@MongoTestBedGenerated(count = 10000000, seed = 42)</p>
+ * <p>public static DBCollection bigCollection;</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD})
+public @interface MongoTestBedGenerated {
+
+    long count();
+
+    /**
+     * The same template, count and seed always generate the same documents
+     */
+    long seed() default 0;
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an index of a {@link MongoTestBedCollection}. Mongo-TestBed builds the indexes only after the fixture has
+ * been loaded, so the inserts never pay for index maintenance.
+ * <p>Example:</p>
+ * <p>@MongoTestBedCollection(name = "test_collection", location = "test_collection.json",
+ * indexes = @MongoTestBedIndex(keys = "{ 'last_name' : 1, 'age' : -1 }", unique = true))</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({})
+public @interface MongoTestBedIndex {
+
+    /**
+     * JSON document of the indexed fields and their direction, e.g. {@code { 'name' : 1 }}
+     */
+    String keys();
+
+    /**
+     * Empty for the name generated by mongo
+     */
+    String name() default "";
+
+    boolean unique() default false;
+
+    boolean sparse() default false;
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Use this annotation on a test method to list the names of the {@link MongoTestBedCollection}s it uses. With
+ * {@code MongoManager.withLazySeeding()} only the collections used by the tests about to run are seeded, e.g. a single
+ * one for {@code -Dtest=Foo#oneMethod}. A test without this annotation uses every collection of its class, ignored
+ * tests use none. Once every test method of a class declares its collections, each collection field has to be declared
+ * by at least one of them.
+ * <p>Example:</p>
+ * <p>@Test</p>
+ * <p>@MongoTestBedUses("test_collection")</p>
+ * <p>public void shouldFindAllDocuments() {</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface MongoTestBedUses {
+
+    String[] value();
+
+}
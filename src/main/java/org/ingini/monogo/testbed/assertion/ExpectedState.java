@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.assertion;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.CommandResult;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.ingini.monogo.testbed.fixture.BsonOrder;
+import org.ingini.monogo.testbed.fixture.BulkLoadOptions;
+import org.ingini.monogo.testbed.fixture.FixtureLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks a live collection against an expected fixture, in any format {@code @MongoTestBedCollection} accepts, without
+ * pulling the collection to the client. The fixture is loaded into a scratch collection next to the checked one and
+ * both are compared on the server through their counts and {@code dbHash}es. Only on a mismatch are both sides
+ * streamed in {@code _id} order, chunk by chunk, to report the first differing documents. Documents are matched by
+ * {@code _id}, hence the expected documents need one.
+ * <p>Example:</p>
+ * <p>ExpectedState.of(collection).matches("expected_collection.json");</p>
+ */
+public class ExpectedState {
+
+    public static final String EXPECTED_PREFIX = "testbed_expected.";
+    public static final int DEFAULT_MAX_DIFFERENCES = 10;
+
+    private static final String MONGO_ID_KEY = "_id";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DBCollection collection;
+    private int batchSize = FixtureLoader.DEFAULT_BATCH_SIZE;
+    private int maxDifferences = DEFAULT_MAX_DIFFERENCES;
+
+    private ExpectedState(DBCollection collection) {
+        this.collection = collection;
+    }
+
+    public static ExpectedState of(DBCollection collection) {
+        return new ExpectedState(collection);
+    }
+
+    /**
+     * @param batchSize positive number of documents per insert of the expected fixture and per chunk of the diff
+     * @return this expected state
+     */
+    public ExpectedState withBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be positive but was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param maxDifferences positive number of differences after which the diff stops
+     * @return this expected state
+     */
+    public ExpectedState withMaxDifferences(int maxDifferences) {
+        if (maxDifferences < 1) {
+            throw new IllegalArgumentException("Max differences should be positive but were " + maxDifferences);
+        }
+        this.maxDifferences = maxDifferences;
+        return this;
+    }
+
+    /**
+     * @param location of the expected fixture on the classpath
+     * @throws AssertionError listing the first missing, unexpected and differing documents
+     */
+    public void matches(String location) {
+        DB mongoDB = collection.getDB();
+        DBCollection expected = mongoDB.getCollection(EXPECTED_PREFIX + collection.getName());
+        expected.drop();
+        try {
+            new FixtureLoader(BulkLoadOptions.batchSize(batchSize)).load(expected, location);
+            long expectedCount = expected.count();
+            long actualCount = collection.count();
+            if (expectedCount == actualCount && sameHash(mongoDB, expected)) {
+                logger.debug("Mongo collection {} matches {} by hash", collection.getName(), location);
+                return;
+            }
+
+            List<String> differences = diff(expected);
+            if (differences.isEmpty()) {
+                // same documents, yet stored with a different field order
+                logger.debug("Mongo collection {} matches {} document by document", collection.getName(), location);
+                return;
+            }
+            StringBuilder message = new StringBuilder("Mongo collection ").append(collection.getName())
+                    .append(" does not match ").append(location).append(" (expected ").append(expectedCount)
+                    .append(" documents, found ").append(actualCount).append("), first differences:");
+            for (String difference : differences) {
+                message.append("\n    ").append(difference);
+            }
+            throw new AssertionError(message.toString());
+        } finally {
+            expected.drop();
+        }
+    }
+
+    private boolean sameHash(DB mongoDB, DBCollection expected) {
+        CommandResult result = mongoDB.command(new BasicDBObject("dbHash", 1)
+                .append("collections", Arrays.asList(collection.getName(), expected.getName())));
+        if (!result.ok() || !(result.get("collections") instanceof DBObject)) {
+            logger.debug("No dbHash available, comparing document by document: {}", result.getErrorMessage());
+            return false;
+        }
+        DBObject hashes = (DBObject) result.get("collections");
+        Object actualHash = hashes.get(collection.getName());
+        return actualHash != null && actualHash.equals(hashes.get(expected.getName()));
+    }
+
+    private List<String> diff(DBCollection expected) {
+        List<String> differences = new ArrayList<String>();
+        DBCursor expectedCursor = expected.find().sort(new BasicDBObject(MONGO_ID_KEY, 1)).batchSize(batchSize);
+        DBCursor actualCursor = collection.find().sort(new BasicDBObject(MONGO_ID_KEY, 1)).batchSize(batchSize);
+        try {
+            DBObject expectedDocument = next(expectedCursor);
+            DBObject actualDocument = next(actualCursor);
+            while ((expectedDocument != null || actualDocument != null) && differences.size() < maxDifferences) {
+                int order = expectedDocument == null ? 1 : actualDocument == null ? -1
+                        : BsonOrder.compare(expectedDocument.get(MONGO_ID_KEY), actualDocument.get(MONGO_ID_KEY));
+                if (order < 0) {
+                    differences.add("missing " + expectedDocument);
+                    expectedDocument = next(expectedCursor);
+                } else if (order > 0) {
+                    differences.add("unexpected " + actualDocument);
+                    actualDocument = next(actualCursor);
+                } else {
+                    if (!expectedDocument.equals(actualDocument)) {
+                        differences.add("expected " + expectedDocument + " but was " + actualDocument);
+                    }
+                    expectedDocument = next(expectedCursor);
+                    actualDocument = next(actualCursor);
+                }
+            }
+            return differences;
+        } finally {
+            expectedCursor.close();
+            actualCursor.close();
+        }
+    }
+
+    private static DBObject next(DBCursor cursor) {
+        return cursor.hasNext() ? cursor.next() : null;
+    }
+}
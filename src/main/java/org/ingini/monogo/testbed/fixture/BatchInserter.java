@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBEncoder;
+import com.mongodb.DBObject;
+import com.mongodb.WriteConcern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends batches of documents to a collection according to {@link BulkLoadOptions}. Every inserting thread pins its
+ * own connection for the whole load; with more than one connection the batches are handed over through a bounded
+ * queue, hence producers block as soon as the inserters fall behind. An unacknowledged load is closed by one
+ * acknowledged {@code getLastError} per connection, so {@link #finish()} only returns once mongo processed every
+ * batch. That barrier only reports the error of the last insert of each connection, hence the count of the collection
+ * tells whether earlier inserts failed. Always {@link #close()} the inserter, whether the load succeeded or not.
+ */
+public class BatchInserter {
+
+    private static final DBObject[] POISON = new DBObject[0];
+    private static final int QUEUED_BATCHES_PER_CONNECTION = 2;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DBCollection collection;
+    private final DBEncoder encoder;
+    private final WriteConcern writeConcern;
+    private final BlockingQueue<DBObject[]> queue;
+    private final List<Thread> inserters = new ArrayList<Thread>();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+
+    private boolean requestStarted;
+
+    /**
+     * @param encoder used to serialize the documents, {@code null} for the default encoder of the collection
+     */
+    public BatchInserter(final DBCollection collection, BulkLoadOptions options, DBEncoder encoder) {
+        this.collection = collection;
+        this.encoder = encoder;
+        this.writeConcern = options.writeConcernFor(collection);
+        if (options.getConnections() == 1) {
+            this.queue = null;
+            return;
+        }
+
+        this.queue = new ArrayBlockingQueue<DBObject[]>(options.getConnections() * QUEUED_BATCHES_PER_CONNECTION);
+        for (int i = 0; i < options.getConnections(); i++) {
+            Thread inserter = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, "mongo-testbed-inserter-" + collection.getName() + "-" + i);
+            inserter.setDaemon(true);
+            inserter.start();
+            inserters.add(inserter);
+        }
+    }
+
+    /**
+     * Inserts {@code batch}, either right away or by handing it to one of the inserting connections. The array must
+     * not be reused by the caller.
+     */
+    public void insert(DBObject[] batch) {
+        rethrowFailure();
+        if (queue == null) {
+            if (!requestStarted) {
+                collection.getDB().requestStart();
+                requestStarted = true;
+            }
+            send(batch);
+            return;
+        }
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading mongo collection " + collection.getName(), e);
+        }
+    }
+
+    /**
+     * Waits for all batches to be applied by mongo
+     *
+     * @return the number of inserted documents
+     * @throws RuntimeException the first failure of any inserting connection
+     */
+    public long finish() {
+        if (queue == null) {
+            if (requestStarted) {
+                acknowledge(collection.getDB());
+            }
+        } else {
+            try {
+                for (int i = 0; i < inserters.size(); i++) {
+                    queue.put(POISON);
+                }
+                for (Thread inserter : inserters) {
+                    inserter.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading mongo collection " + collection.getName(), e);
+            }
+        }
+        rethrowFailure();
+        return inserted.get();
+    }
+
+    /**
+     * Releases the pinned connections, aborting the load in case {@link #finish()} has not been reached
+     */
+    public void close() {
+        if (requestStarted) {
+            collection.getDB().requestDone();
+            requestStarted = false;
+        }
+        for (Thread inserter : inserters) {
+            inserter.interrupt();
+        }
+    }
+
+    private void drain() {
+        DB db = collection.getDB();
+        db.requestStart();
+        try {
+            for (DBObject[] batch = queue.take(); batch != POISON; batch = queue.take()) {
+                if (failure.get() == null) {
+                    send(batch);
+                }
+            }
+            if (failure.get() == null) {
+                acknowledge(db);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Unable to insert into mongo collection {} due to an exception!", collection.getName(), e);
+            failure.compareAndSet(null, e);
+            // keep consuming so that the producer is never blocked on a full queue
+            try {
+                for (DBObject[] batch = queue.take(); batch != POISON; batch = queue.take()) {
+                    // discarded
+                }
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            db.requestDone();
+        }
+    }
+
+    private void send(DBObject[] batch) {
+        collection.insert(batch, writeConcern, encoder);
+        inserted.addAndGet(batch.length);
+    }
+
+    private void acknowledge(DB db) {
+        if (!writeConcern.callGetLastError()) {
+            db.getLastError(WriteConcern.SAFE).throwOnError();
+        }
+    }
+
+    private void rethrowFailure() {
+        RuntimeException e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DBCallback;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBCallback;
+import org.bson.BSONDecoder;
+import org.bson.BasicBSONDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads consecutive BSON documents as written by {@code mongodump} (and by {@link FixtureCompiler}). The channel is
+ * read in chunks, the buffer only grows for documents larger than a chunk.
+ */
+public class BsonDocumentReader implements TimedDocumentReader {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int INT_SIZE = 4;
+    private static final int EOF = -1;
+
+    private final ReadableByteChannel channel;
+    private final BSONDecoder decoder = new BasicBSONDecoder();
+    private final DBCallback callback = new DefaultDBCallback(null);
+
+    private ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long offset;
+    private long readNanos;
+    private long parseNanos;
+
+    public BsonDocumentReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    @Override
+    public DBObject next() throws IOException {
+        if (!ensure(INT_SIZE)) {
+            if (buffer.hasRemaining()) {
+                throw new IOException("Truncated BSON fixture at offset " + offset);
+            }
+            return null;
+        }
+        int length = buffer.getInt(buffer.position());
+        if (length < INT_SIZE + 1) {
+            throw new IOException("Corrupted BSON fixture at offset " + offset + ", document length " + length);
+        }
+        if (length > buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            larger.put(buffer);
+            larger.flip();
+            buffer = larger;
+        }
+        if (!ensure(length)) {
+            throw new IOException("Truncated BSON fixture at offset " + offset);
+        }
+        byte[] document = new byte[length];
+        buffer.get(document);
+        offset += length;
+
+        long parseStart = System.nanoTime();
+        try {
+            callback.reset();
+            decoder.decode(document, callback);
+            return (DBObject) callback.get();
+        } finally {
+            parseNanos += System.nanoTime() - parseStart;
+        }
+    }
+
+    /**
+     * Reads from the channel until at least {@code bytes} bytes are buffered
+     *
+     * @return {@code false} in case the channel ends before
+     */
+    private boolean ensure(int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            long readStart = System.nanoTime();
+            buffer.compact();
+            int read = channel.read(buffer);
+            buffer.flip();
+            readNanos += System.nanoTime() - readStart;
+            if (read == EOF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    @Override
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Orders document values the way mongo sorts them, as far as the types usable as {@code _id} or shard key go: numbers,
+ * strings, embedded documents, binary data, object ids, booleans and dates
+ */
+public final class BsonOrder {
+
+    private static final List<Class<?>> TYPE_ORDER = Arrays.<Class<?>>asList(
+            Number.class, String.class, DBObject.class, byte[].class, ObjectId.class, Boolean.class, Date.class);
+
+    private BsonOrder() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static int compare(Object first, Object second) {
+        int firstType = typeOrder(first);
+        int secondType = typeOrder(second);
+        if (firstType != secondType) {
+            return firstType < secondType ? -1 : 1;
+        }
+        if (first instanceof Number) {
+            return Double.compare(((Number) first).doubleValue(), ((Number) second).doubleValue());
+        }
+        if (first instanceof Comparable && first.getClass() == second.getClass()) {
+            return ((Comparable<Object>) first).compareTo(second);
+        }
+        return String.valueOf(first).compareTo(String.valueOf(second));
+    }
+
+    private static int typeOrder(Object value) {
+        for (int i = 0; i < TYPE_ORDER.size(); i++) {
+            if (TYPE_ORDER.get(i).isInstance(value)) {
+                return i;
+            }
+        }
+        return value == null ? -1 : TYPE_ORDER.size();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DBCollection;
+import com.mongodb.WriteConcern;
+
+/**
+ * Controls the write path of a fixture load: documents per insert, write concern, ordered vs. unordered inserts and
+ * the number of connections inserting concurrently
+ */
+public class BulkLoadOptions {
+
+    private final int batchSize;
+    private final WriteConcern writeConcern;
+    private final boolean ordered;
+    private final int connections;
+
+    /**
+     * @param batchSize    positive number of documents per insert
+     * @param writeConcern used during the load, {@code null} for the write concern of the collection
+     * @param ordered      {@code false} to keep inserting the remaining documents of a batch after a failed one
+     * @param connections  positive number of connections inserting concurrently
+     */
+    public BulkLoadOptions(int batchSize, WriteConcern writeConcern, boolean ordered, int connections) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be positive but was " + batchSize);
+        }
+        if (connections < 1) {
+            throw new IllegalArgumentException("Insert connections should be positive but were " + connections);
+        }
+        this.batchSize = batchSize;
+        this.writeConcern = writeConcern;
+        this.ordered = ordered;
+        this.connections = connections;
+    }
+
+    /**
+     * @return ordered inserts on a single connection with the write concern of the collection
+     */
+    public static BulkLoadOptions batchSize(int batchSize) {
+        return new BulkLoadOptions(batchSize, null, true, 1);
+    }
+
+    /**
+     * @param name of a {@link WriteConcern} constant, e.g. {@code NONE}, {@code NORMAL} or {@code SAFE}
+     * @throws IllegalArgumentException in case there is no such write concern
+     */
+    public static WriteConcern writeConcern(String name) {
+        WriteConcern writeConcern = WriteConcern.valueOf(name);
+        if (writeConcern == null) {
+            throw new IllegalArgumentException("Unknown write concern " + name);
+        }
+        return writeConcern;
+    }
+
+    /**
+     * @return the write concern to use for inserting into {@code collection}
+     */
+    public WriteConcern writeConcernFor(DBCollection collection) {
+        WriteConcern concern = writeConcern != null ? writeConcern : collection.getWriteConcern();
+        return ordered ? concern : concern.continueOnErrorForInsert(true);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public WriteConcern getWriteConcern() {
+        return writeConcern;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.CommandResult;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.LazyDBDecoder;
+import com.mongodb.LazyDBEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies all documents of a collection into another collection of the same database: server-side through an
+ * aggregation with an {@code $out} stage where available (mongo 2.6+), otherwise by streaming the raw documents
+ * through the client in batches. The raw bytes of each document are sent back as they were received, so the
+ * client-side copy never decodes nor re-encodes a document. The target collection is expected not to exist.
+ */
+public class CollectionCopier {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DB mongoDB;
+    private final int batchSize;
+
+    public CollectionCopier(DB mongoDB) {
+        this(mongoDB, FixtureLoader.DEFAULT_BATCH_SIZE);
+    }
+
+    public CollectionCopier(DB mongoDB, int batchSize) {
+        this.mongoDB = mongoDB;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return the copied {@code target} collection
+     */
+    public DBCollection copy(String source, String target) {
+        if (copyWithAggregation(source, target)) {
+            return mongoDB.getCollection(target);
+        }
+        return copyThroughClient(source, target);
+    }
+
+    private boolean copyWithAggregation(String source, String target) {
+        BasicDBList pipeline = new BasicDBList();
+        pipeline.add(new BasicDBObject("$match", new BasicDBObject()));
+        pipeline.add(new BasicDBObject("$out", target));
+        CommandResult result = mongoDB.command(new BasicDBObject("aggregate", source)
+                .append("pipeline", pipeline)
+                .append("cursor", new BasicDBObject()));
+        if (!result.ok()) {
+            logger.debug("Server-side aggregation copy of {} is not available: {}", source, result.getErrorMessage());
+        }
+        return result.ok();
+    }
+
+    private DBCollection copyThroughClient(String source, String target) {
+        if (mongoDB.collectionExists(target)) {
+            mongoDB.getCollection(target).drop();
+        }
+        DBCollection to = mongoDB.createCollection(target, new BasicDBObject());
+        DBCursor cursor = mongoDB.getCollection(source).find().batchSize(batchSize).setDecoderFactory(LazyDBDecoder.FACTORY);
+        BatchInserter inserter = new BatchInserter(to, BulkLoadOptions.batchSize(batchSize), new LazyDBEncoder());
+        try {
+            DBObject[] batch = new DBObject[batchSize];
+            int size = 0;
+            while (cursor.hasNext()) {
+                batch[size++] = cursor.next();
+                if (size == batchSize) {
+                    inserter.insert(batch);
+                    batch = new DBObject[batchSize];
+                    size = 0;
+                }
+            }
+            if (size > 0) {
+                DBObject[] last = new DBObject[size];
+                System.arraycopy(batch, 0, last, 0, size);
+                inserter.insert(last);
+            }
+            long copied = inserter.finish();
+            logger.debug("Copied {} documents of mongo collection {} into {} through the client", new Object[]{copied, source, target});
+        } finally {
+            inserter.close();
+            cursor.close();
+        }
+        return to;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.LazyDBCallback;
+import com.mongodb.LazyDBEncoder;
+import com.mongodb.LazyDBObject;
+import org.ingini.monogo.testbed.metrics.Phase;
+import org.ingini.monogo.testbed.metrics.PhaseTiming;
+import org.ingini.monogo.testbed.metrics.TestBedMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Loads fixtures compiled by {@link FixtureCompiler}. The compiled file is memory-mapped and the raw bytes of each
+ * batch are handed to the driver as {@link LazyDBObject}s, which the {@link LazyDBEncoder} pipes to the socket as
+ * they are. No intermediate {@code BasicDBObject} graph is ever built.
+ */
+public class CompiledFixtureLoader {
+
+    private static final long MAPPING_WINDOW = 64L * 1024 * 1024; // comfortably above the 16MB max document size
+    private static final int INT_SIZE = 4;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final BulkLoadOptions options;
+    private final FixtureCompiler compiler;
+    private final TestBedMetrics metrics;
+
+    public CompiledFixtureLoader(int batchSize) {
+        this(BulkLoadOptions.batchSize(batchSize));
+    }
+
+    public CompiledFixtureLoader(BulkLoadOptions options) {
+        this(options, new FixtureCompiler());
+    }
+
+    public CompiledFixtureLoader(BulkLoadOptions options, FixtureCompiler compiler) {
+        this(options, compiler, TestBedMetrics.disabled());
+    }
+
+    /**
+     * @param metrics receiving the {@link Phase#PARSE} timing of the compilation as well as the {@link Phase#READ} and
+     *                {@link Phase#INSERT} timings of each load
+     */
+    public CompiledFixtureLoader(BulkLoadOptions options, FixtureCompiler compiler, TestBedMetrics metrics) {
+        this.options = options;
+        this.compiler = compiler;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Compiles the JSON fixture at {@code location} on first use and loads the compiled file into {@code collection}
+     *
+     * @return the number of inserted documents
+     * @throws IllegalStateException in case the fixture cannot be compiled or read
+     */
+    public long load(DBCollection collection, String location) {
+        long compileStart = System.nanoTime();
+        File compiled = compiler.compile(location);
+        metrics.record(Phase.PARSE, collection.getName(), compileStart);
+        try {
+            return load(collection, compiled);
+        } catch (IOException e) {
+            logger.error("Unable to read compiled fixture {} due to an exception!", compiled, e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Loads a file of consecutive BSON documents into {@code collection}
+     *
+     * @return the number of inserted documents
+     */
+    public long load(DBCollection collection, File compiled) throws IOException {
+        int batchSize = options.getBatchSize();
+        RandomAccessFile file = new RandomAccessFile(compiled, "r");
+        BatchInserter inserter = new BatchInserter(collection, options, new LazyDBEncoder());
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            LazyDBCallback callback = new LazyDBCallback(collection);
+
+            long readNanos = 0;
+            long insertNanos = 0;
+            long position = 0;
+            while (position < size) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPING_WINDOW, size - position));
+                window.order(ByteOrder.LITTLE_ENDIAN);
+                int consumed = 0;
+                while (true) {
+                    long readStart = System.nanoTime();
+                    int documents = 0;
+                    int start = consumed;
+                    int end = consumed;
+                    while (documents < batchSize && end + INT_SIZE <= window.limit()) {
+                        int length = window.getInt(end);
+                        if (length < INT_SIZE + 1) {
+                            throw new IOException("Corrupted compiled fixture " + compiled + " at offset " + (position + end));
+                        }
+                        if (end + length > window.limit()) {
+                            break;
+                        }
+                        end += length;
+                        documents++;
+                    }
+                    if (documents == 0) {
+                        break;
+                    }
+
+                    byte[] bytes = new byte[end - start];
+                    window.position(start);
+                    window.get(bytes);
+                    DBObject[] batch = new DBObject[documents];
+                    for (int i = 0, offset = 0; i < documents; i++) {
+                        batch[i] = new LazyDBObject(bytes, offset, callback);
+                        offset += readLength(bytes, offset);
+                    }
+                    long insertStart = System.nanoTime();
+                    readNanos += insertStart - readStart;
+                    inserter.insert(batch);
+                    insertNanos += System.nanoTime() - insertStart;
+                    consumed = end;
+                }
+                if (consumed == 0) {
+                    throw new IOException("Truncated compiled fixture " + compiled + " at offset " + position);
+                }
+                position += consumed;
+            }
+            long finishStart = System.nanoTime();
+            long inserted = inserter.finish();
+            insertNanos += System.nanoTime() - finishStart;
+            metrics.recordDuration(Phase.READ, collection.getName(), readNanos, PhaseTiming.UNKNOWN, size);
+            metrics.recordDuration(Phase.INSERT, collection.getName(), insertNanos, inserted, size);
+            logger.debug("Inserted {} compiled documents into mongo collection {}", inserted, collection.getName());
+            return inserted;
+        } finally {
+            inserter.close();
+            file.close();
+        }
+    }
+
+    private static int readLength(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF)
+                | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16
+                | (bytes[offset + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DBObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the documents of a fixture one at a time, so that only the current document has to be kept in memory
+ */
+public interface DocumentReader extends Closeable {
+
+    /**
+     * @return the next document of the fixture or {@code null} if there are no more documents
+     * @throws IOException in case the underlying source cannot be read
+     */
+    DBObject next() throws IOException;
+
+}
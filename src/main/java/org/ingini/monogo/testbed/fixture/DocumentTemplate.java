@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * A fixture document acting as template for generated documents. Every value of the form
+ * {@code { "$gen" : "<generator>", ... }} is replaced by a generated one, every other value is copied as it is and
+ * nested documents and arrays are traversed. The supported generators are:
+ * <ul>
+ * <li>{@code { "$gen" : "sequence", "start" : 0, "step" : 1 }} - {@code start + index * step}</li>
+ * <li>{@code { "$gen" : "range", "min" : 0, "max" : 100 }} - random number within {@code [min, max]}, a floating
+ * point one within {@code [min, max)} if any of the bounds is a floating point number</li>
+ * <li>{@code { "$gen" : "objectId" }} - an {@link ObjectId} unique per document</li>
+ * <li>{@code { "$gen" : "date", "from" : "2012-01-01", "to" : "2013-01-01" }} - random date within {@code [from, to)},
+ * the bounds being UTC days or milliseconds since the epoch</li>
+ * <li>{@code { "$gen" : "oneOf", "values" : [ ... ] }} - random element of {@code values}</li>
+ * </ul>
+ * The document with a given index only depends on the template, the seed and the index, so generating documents out
+ * of order or on different threads always yields the same data.
+ */
+public class DocumentTemplate {
+
+    public static final String GENERATOR_KEY = "$gen";
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final int OBJECT_ID_EPOCH_SECONDS = 1349049600; // 2012-10-01T00:00:00Z
+    private static final String DAY_FORMAT = "yyyy-MM-dd";
+
+    private final long seed;
+    private final DocumentNode root;
+    private int objectIdGenerators;
+
+    public DocumentTemplate(DBObject template, long seed) {
+        this.seed = seed;
+        this.root = document(template);
+    }
+
+    /**
+     * Reads the template document found on the classpath at {@code location}
+     *
+     * @throws IllegalStateException in case the template cannot be found, read or understood
+     */
+    public static DocumentTemplate load(String location, long seed) {
+        InputStream inputStream = DocumentTemplate.class.getClassLoader().getResourceAsStream(location);
+        if (inputStream == null) {
+            throw new IllegalStateException("Unable to find fixture template " + location + " on the classpath!");
+        }
+        try {
+            StringBuilder text = new StringBuilder();
+            Reader reader = new InputStreamReader(inputStream, Fixtures.UTF_8);
+            char[] buffer = new char[4096];
+            for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+                text.append(buffer, 0, read);
+            }
+            Object template = JSON.parse(text.toString());
+            if (!(template instanceof DBObject) || template instanceof BasicDBList) {
+                throw new IllegalStateException("Fixture template " + location + " should be a single JSON document");
+            }
+            return new DocumentTemplate((DBObject) template, seed);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read fixture template " + location, e);
+        } finally {
+            Fixtures.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * @return the document with the given zero-based {@code index}
+     */
+    public DBObject generate(long index) {
+        return (DBObject) root.value(index, new SplitMix(seed, index));
+    }
+
+    private Node node(Object value) {
+        if (value instanceof BasicDBList) {
+            List<Node> elements = new ArrayList<Node>();
+            for (Object element : (BasicDBList) value) {
+                elements.add(node(element));
+            }
+            return new ArrayNode(elements);
+        }
+        if (value instanceof DBObject) {
+            DBObject object = (DBObject) value;
+            return object.containsField(GENERATOR_KEY) ? generator(object) : document(object);
+        }
+        return new ConstantNode(value);
+    }
+
+    private DocumentNode document(DBObject object) {
+        Map<String, Node> fields = new LinkedHashMap<String, Node>();
+        for (String key : object.keySet()) {
+            fields.put(key, node(object.get(key)));
+        }
+        return new DocumentNode(fields);
+    }
+
+    private Node generator(DBObject spec) {
+        String type = String.valueOf(spec.get(GENERATOR_KEY));
+        if ("sequence".equals(type)) {
+            return new SequenceNode(number(spec, "start", 0), number(spec, "step", 1));
+        }
+        if ("range".equals(type)) {
+            Number min = number(spec, "min", null);
+            Number max = number(spec, "max", null);
+            if (min instanceof Double || max instanceof Double) {
+                return new DoubleRangeNode(min.doubleValue(), max.doubleValue());
+            }
+            return new LongRangeNode(min.longValue(), max.longValue());
+        }
+        if ("objectId".equals(type)) {
+            return new ObjectIdNode((int) (seed * 31 + objectIdGenerators++));
+        }
+        if ("date".equals(type)) {
+            return new DateNode(millis(spec, "from"), millis(spec, "to"));
+        }
+        if ("oneOf".equals(type)) {
+            Object values = spec.get("values");
+            if (!(values instanceof BasicDBList) || ((BasicDBList) values).isEmpty()) {
+                throw new IllegalStateException("Generator " + spec + " needs a non-empty 'values' array");
+            }
+            return new ArrayNode(((ArrayNode) node(values)).elements, true);
+        }
+        throw new IllegalStateException("Unknown generator " + spec);
+    }
+
+    private static Number number(DBObject spec, String key, Number defaultValue) {
+        Object value = spec.get(key);
+        if (value == null && defaultValue != null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalStateException("Generator " + spec + " needs a numeric '" + key + "'");
+        }
+        return (Number) value;
+    }
+
+    private static long millis(DBObject spec, String key) {
+        Object value = spec.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof String) {
+            SimpleDateFormat format = new SimpleDateFormat(DAY_FORMAT);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            try {
+                return format.parse((String) value).getTime();
+            } catch (ParseException e) {
+                throw new IllegalStateException("Generator " + spec + " has an invalid '" + key + "' day", e);
+            }
+        }
+        throw new IllegalStateException("Generator " + spec + " needs a '" + key + "' day or epoch milliseconds");
+    }
+
+    /**
+     * SplitMix64 stream seeded by the template seed and the document index
+     */
+    private static final class SplitMix {
+
+        private long state;
+
+        SplitMix(long seed, long index) {
+            this.state = mix(seed + index * GOLDEN_GAMMA);
+        }
+
+        long nextLong() {
+            return mix(state += GOLDEN_GAMMA);
+        }
+
+        /**
+         * @param bound taken as unsigned, zero standing for 2<sup>64</sup>, i.e. the full range of {@code long}
+         * @return uniformly distributed within {@code [0, bound)}, compared as unsigned
+         */
+        long nextLong(long bound) {
+            if (bound == 0) {
+                return nextLong();
+            }
+            if (bound < 0) {
+                // above 2^63 more than every other value is within the bound
+                long r = nextLong();
+                while (r + Long.MIN_VALUE >= bound + Long.MIN_VALUE) {
+                    r = nextLong();
+                }
+                return r;
+            }
+            long u = nextLong() >>> 1;
+            long r = u % bound;
+            // rejects the values of the last, incomplete multiple of bound which would favour the small remainders
+            while (u - r + (bound - 1) < 0) {
+                u = nextLong() >>> 1;
+                r = u % bound;
+            }
+            return r;
+        }
+
+        double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    private interface Node {
+        Object value(long index, SplitMix random);
+    }
+
+    private static final class ConstantNode implements Node {
+        private final Object constant;
+
+        ConstantNode(Object constant) {
+            this.constant = constant;
+        }
+
+        @Override
+        public Object value(long index, SplitMix random) {
+            return constant;
+        }
+    }
+
+    private static final class DocumentNode implements Node {
+        private final Map<String, Node> fields;
+
+        DocumentNode(Map<String, Node> fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public Object value(long index, SplitMix random) {
+            BasicDBObject document = new BasicDBObject();
+            for (Map.Entry<String, Node> field : fields.entrySet()) {
+                document.put(field.getKey(), field.getValue().value(index, random));
+            }
+            return document;
+        }
+    }
+
+    private static final class ArrayNode implements Node {
+        private final List<Node> elements;
+        private final boolean pickOne;
+
+        ArrayNode(List<Node> elements) {
+            this(elements, false);
+        }
+
+        ArrayNode(List<Node> elements, boolean pickOne) {
+            this.elements = elements;
+            this.pickOne = pickOne;
+        }
+
+        @Override
+        public Object value(long index, SplitMix random) {
+            if (pickOne) {
+                return elements.get((int) random.nextLong(elements.size())).value(index, random);
+            }
+            BasicDBList list = new BasicDBList();
+            for (Node element : elements) {
+                list.add(element.value(index, random));
+            }
+            return list;
+        }
+    }
+
+    private static final class SequenceNode implements Node {
+        private final Number start;
+        private final Number step;
+
+        SequenceNode(Number start, Number step) {
+            this.start = start;
+            this.step = step;
+        }
+
+        @Override
+        public Object value(long index, SplitMix random) {
+            if (start instanceof Double || step instanceof Double) {
+                return start.doubleValue() + index * step.doubleValue();
+            }
+            return start.longValue() + index * step.longValue();
+        }
+    }
+
+    private static final class LongRangeNode implements Node {
+        private final long min;
+        private final long span;
+
+        LongRangeNode(long min, long max) {
+            if (max < min) {
+                throw new IllegalStateException("Range maximum " + max + " is below its minimum " + min);
+            }
+            this.min = min;
+            // unsigned, overflowing to zero for the full range of long
+            this.span = max - min + 1;
+        }
+
+        @Override
+        public Object value(long index, SplitMix random) {
+            return min + random.nextLong(span);
+        }
+    }
+
+    private static final class DoubleRangeNode implements Node {
+        private final double min;
+        private final double span;
+
+        DoubleRangeNode(double min, double max) {
+            if (max < min) {
+                throw new IllegalStateException("Range maximum " + max + " is below its minimum " + min);
+            }
+            this.min = min;
+            this.span = max - min;
+        }
+
+        @Override
+        public Object value(long index, SplitMix random) {
+            return min + random.nextDouble() * span;
+        }
+    }
+
+    private static final class ObjectIdNode implements Node {
+        private final int machine;
+
+        ObjectIdNode(int machine) {
+            this.machine = machine;
+        }
+
+        @Override
+        public Object value(long index, SplitMix random) {
+            return new ObjectId(OBJECT_ID_EPOCH_SECONDS + (int) (index >>> 32), machine, (int) index);
+        }
+    }
+
+    private static final class DateNode implements Node {
+        private final long from;
+        private final long span;
+
+        DateNode(long from, long to) {
+            if (to <= from) {
+                throw new IllegalStateException("Date range end " + new Date(to) + " is not after its start " + new Date(from));
+            }
+            this.from = from;
+            // unsigned, hence still right where the difference overflows a long
+            this.span = to - from;
+        }
+
+        @Override
+        public Object value(long index, SplitMix random) {
+            return new Date(from + random.nextLong(span));
+        }
+    }
+}
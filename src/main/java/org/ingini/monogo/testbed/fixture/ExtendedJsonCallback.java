@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.util.JSONCallback;
+import org.bson.BSONObject;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Understands the MongoDB Extended JSON written by {@code mongoexport} on top of what the driver parses already
+ * ({@code $oid}, {@code $date} as milliseconds or UTC string, {@code $regex}, ...): {@code $numberLong},
+ * {@code $numberInt}, {@code $numberDouble} and {@code $date} strings with a numeric time zone offset. Values keep
+ * their type, an {@code ObjectId} is written as {@code $oid} and a string {@code _id} stays a string.
+ */
+public class ExtendedJsonCallback extends JSONCallback {
+
+    private static final String DATE_WITH_OFFSET = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+
+    @Override
+    public Object objectDone() {
+        String name = curName();
+        Object converted = convert(cur());
+        Object done = super.objectDone();
+        if (converted == null) {
+            return done;
+        }
+        if (!isStackEmpty()) {
+            _put(name, converted);
+        } else {
+            setRoot(converted);
+        }
+        return converted;
+    }
+
+    /**
+     * @return the value of an Extended JSON wrapper the driver does not understand, {@code null} for any other object
+     */
+    private static Object convert(BSONObject object) {
+        if (object instanceof List || object.keySet().size() != 1) {
+            return null;
+        }
+        if (object.containsField("$numberLong")) {
+            return Long.valueOf(object.get("$numberLong").toString());
+        }
+        if (object.containsField("$numberInt")) {
+            return Integer.valueOf(object.get("$numberInt").toString());
+        }
+        if (object.containsField("$numberDouble")) {
+            return Double.valueOf(object.get("$numberDouble").toString());
+        }
+        Object date = object.get("$date");
+        if (date instanceof String && !((String) date).endsWith("Z")) {
+            SimpleDateFormat format = new SimpleDateFormat(DATE_WITH_OFFSET);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            Date parsed = format.parse((String) date, new ParsePosition(0));
+            if (parsed == null) {
+                throw new IllegalArgumentException("Unable to parse $date " + date);
+            }
+            return parsed;
+        }
+        return null;
+    }
+}
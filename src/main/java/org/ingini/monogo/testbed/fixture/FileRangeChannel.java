@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A channel over the range {@code [start, end)} of a file, read through positional reads so that any number of ranges
+ * can be read concurrently from one shared {@link FileChannel}. Closing the range leaves the file open.
+ */
+class FileRangeChannel implements ReadableByteChannel {
+
+    private static final int EOF = -1;
+
+    private final FileChannel file;
+    private final long end;
+
+    private long position;
+    private boolean open = true;
+
+    FileRangeChannel(FileChannel file, long start, long end) {
+        this.file = file;
+        this.position = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+        if (position >= end) {
+            return EOF;
+        }
+        int limit = destination.limit();
+        if (destination.remaining() > end - position) {
+            destination.limit(destination.position() + (int) (end - position));
+        }
+        try {
+            int read = file.read(destination, position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        } finally {
+            destination.limit(limit);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+}
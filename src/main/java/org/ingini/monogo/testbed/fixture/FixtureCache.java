@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a pristine "template" copy of every seeded collection, tagged with the content hash of its fixture. As long as
+ * the fixture does not change, the working collection is recreated through a raw copy of the template instead
+ * of parsing and inserting the fixture again. Templates live next to the working collections in the same database.
+ * A template is copied under a partial name first and renamed once complete, hence a copy interrupted by a crash or a
+ * timeout is never mistaken for a template.
+ */
+public class FixtureCache {
+
+    public static final String TEMPLATE_PREFIX = "testbed_template.";
+    public static final String PARTIAL_TEMPLATE_PREFIX = "testbed_partial_template.";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DB mongoDB;
+    private final CollectionCopier copier;
+
+    public FixtureCache(DB mongoDB) {
+        this.mongoDB = mongoDB;
+        this.copier = new CollectionCopier(mongoDB);
+    }
+
+    /**
+     * Recreates the collection {@code name} from its template if the fixture at {@code location} did not change
+     *
+     * @param parameters which change the seeded documents along with the fixture, e.g. the count of generated ones
+     * @return the restored collection or {@code null} in case there is no template for the current fixture content
+     */
+    public DBCollection restore(String name, String location, String... parameters) {
+        String template = templateName(name, FixtureDigest.of(location, parameters));
+        if (!mongoDB.collectionExists(template)) {
+            logger.debug("No template {} found for mongo collection {}", template, name);
+            return null;
+        }
+        logger.debug("Restoring mongo collection {} from template {}", name, template);
+        return copier.copy(template, name);
+    }
+
+    /**
+     * Stores the freshly seeded collection {@code name} as template for the fixture at {@code location} and the
+     * given {@code parameters}, evicting the templates of previous fixture contents
+     */
+    public void store(String name, String location, String... parameters) {
+        String digest = FixtureDigest.of(location, parameters);
+        String template = templateName(name, digest);
+        for (String collectionName : mongoDB.getCollectionNames()) {
+            if (isTemplateOf(collectionName, name) && !collectionName.equals(template)
+                    || isNamedAfter(collectionName, PARTIAL_TEMPLATE_PREFIX, name)) {
+                logger.debug("Dropping stale template {}", collectionName);
+                mongoDB.getCollection(collectionName).drop();
+            }
+        }
+        if (!mongoDB.collectionExists(template)) {
+            copier.copy(name, PARTIAL_TEMPLATE_PREFIX + name + "." + digest).rename(template, true);
+        }
+    }
+
+    /**
+     * @return whether {@code collectionName} is a template of the collection {@code name}, whatever its digest, but not
+     * one of a collection whose name merely extends {@code name}, e.g. {@code users.archive} for {@code users}
+     */
+    public static boolean isTemplateOf(String collectionName, String name) {
+        return isNamedAfter(collectionName, TEMPLATE_PREFIX, name);
+    }
+
+    private static boolean isNamedAfter(String collectionName, String templatePrefix, String name) {
+        String prefix = templatePrefix + name + ".";
+        return collectionName.startsWith(prefix) && FixtureDigest.isDigest(collectionName.substring(prefix.length()));
+    }
+
+    static String templateName(String name, String digest) {
+        return TEMPLATE_PREFIX + name + "." + digest;
+    }
+}
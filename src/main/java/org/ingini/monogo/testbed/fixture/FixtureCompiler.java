@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBEncoder;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compiles fixtures of any {@link FixtureFormat} into a binary file of consecutive BSON documents (each one prefixed
+ * by its length, as BSON does anyway) with the {@code _id}s already parsed the way the loaders parse them. Documents
+ * without {@code _id} get an {@link ObjectId} assigned at compile time, hence the compiled documents can be piped to
+ * mongo as they are.
+ * <p>Compiled fixtures are named after the content hash of their source, so a stale file is never picked up. They
+ * are written to {@value #DEFAULT_DIRECTORY} unless the {@value #DIRECTORY_PROPERTY} system property says otherwise.
+ * The compiler can also be run ahead of the tests (e.g. through the exec-maven-plugin) with the fixture locations as
+ * arguments.</p>
+ */
+public class FixtureCompiler {
+
+    public static final String DIRECTORY_PROPERTY = "mongo.testbed.compiled.dir";
+    public static final String DEFAULT_DIRECTORY = "target/mongo-testbed/compiled";
+    public static final String EXTENSION = ".bson";
+
+    private static final String MONGO_ID_KEY = "_id";
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final File directory;
+
+    public FixtureCompiler() {
+        this(new File(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY)));
+    }
+
+    public FixtureCompiler(File directory) {
+        this.directory = directory;
+    }
+
+    public static void main(String[] locations) {
+        FixtureCompiler compiler = new FixtureCompiler();
+        for (String location : locations) {
+            System.out.println("Compiled " + location + " into " + compiler.compile(location));
+        }
+    }
+
+    /**
+     * Compiles the fixture at {@code location} unless an up-to-date compiled file exists already
+     *
+     * @return the compiled fixture
+     * @throws IllegalStateException in case the fixture cannot be read or the compiled file cannot be written
+     */
+    public File compile(String location) {
+        File compiled = new File(directory, baseName(location) + "-" + FixtureDigest.of(location) + EXTENSION);
+        if (compiled.isFile()) {
+            logger.debug("Using compiled fixture {} for {}", compiled, location);
+            return compiled;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IllegalStateException("Unable to create directory " + directory + " for compiled fixtures!");
+        }
+
+        File temporary = new File(directory, compiled.getName() + "." + new ObjectId() + ".tmp");
+        try {
+            long documents = compile(location, temporary);
+            // the rename is atomic, concurrent compilers of the same fixture simply overwrite each other
+            if (!temporary.renameTo(compiled) && !compiled.isFile()) {
+                throw new IOException("Unable to rename " + temporary + " to " + compiled);
+            }
+            logger.debug("Compiled {} documents of fixture {} into {}", new Object[]{documents, location, compiled});
+            return compiled;
+        } catch (IOException e) {
+            logger.error("Unable to compile fixture {} due to an exception!", location, e);
+            throw new IllegalStateException(e);
+        } finally {
+            if (temporary.exists() && !temporary.delete()) {
+                temporary.deleteOnExit();
+            }
+        }
+    }
+
+    private long compile(String location, File target) throws IOException {
+        InputStream inputStream = FixtureCompiler.class.getClassLoader().getResourceAsStream(location);
+        if (inputStream == null) {
+            throw new IllegalStateException("Unable to find fixture " + location + " on the classpath!");
+        }
+        DocumentReader reader = FixtureFormat.open(location, inputStream);
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(target), BUFFER_SIZE);
+        try {
+            DefaultDBEncoder encoder = new DefaultDBEncoder();
+            long documents = 0;
+            for (DBObject document = reader.next(); document != null; document = reader.next()) {
+                if (document.get(MONGO_ID_KEY) == null) {
+                    document.put(MONGO_ID_KEY, new ObjectId());
+                }
+                outputStream.write(encoder.encode(document));
+                documents++;
+            }
+            return documents;
+        } finally {
+            Fixtures.closeQuietly(reader);
+            outputStream.close();
+        }
+    }
+
+    private static String baseName(String location) {
+        String name = location.substring(location.lastIndexOf('/') + 1);
+        int extension = name.lastIndexOf('.');
+        return extension > 0 ? name.substring(0, extension) : name;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+/**
+ * Computes a short content hash of a fixture found on the classpath
+ */
+public final class FixtureDigest {
+
+    private static final String ALGORITHM = "SHA-1";
+    private static final int BUFFER_SIZE = 8192;
+    private static final int EOF = -1;
+    private static final int DIGEST_BYTES = 8;
+    private static final Pattern DIGEST = Pattern.compile("[0-9a-f]{" + 2 * DIGEST_BYTES + "}");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private FixtureDigest() {
+    }
+
+    /**
+     * @param parameters hashed after the fixture content
+     * @return the first {@value #DIGEST_BYTES} bytes of the SHA-1 of the fixture at {@code location} as hex string
+     * @throws IllegalStateException in case the fixture cannot be found or read
+     */
+    public static String of(String location, String... parameters) {
+        InputStream inputStream = FixtureDigest.class.getClassLoader().getResourceAsStream(location);
+        if (inputStream == null) {
+            throw new IllegalStateException("Unable to find fixture " + location + " on the classpath!");
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance(ALGORITHM);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int read = inputStream.read(buffer); read != EOF; read = inputStream.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+            for (String parameter : parameters) {
+                digest.update((byte) 0);
+                digest.update(parameter.getBytes(Fixtures.UTF_8));
+            }
+            return toHex(digest.digest(), DIGEST_BYTES);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read fixture " + location, e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Fixtures.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * @return whether {@code candidate} has the form of a digest computed by {@link #of(String, String...)}
+     */
+    public static boolean isDigest(String candidate) {
+        return DIGEST.matcher(candidate).matches();
+    }
+
+    static String toHex(byte[] bytes, int length) {
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The fixture formats understood by the loaders. {@link #open(String, InputStream)} detects the format of a fixture,
+ * optionally gzip-compressed, from its extension and its first bytes: {@code .bson} files and files starting with a
+ * valid BSON document are BSON dumps, otherwise a leading {@code '['} denotes a JSON array and a leading
+ * <code>'{'</code> newline-delimited JSON.
+ */
+public enum FixtureFormat {
+
+    JSON_ARRAY {
+        @Override
+        public TimedDocumentReader reader(InputStream inputStream) {
+            return new JsonArrayDocumentReader(new InputStreamReader(inputStream, Fixtures.UTF_8));
+        }
+    },
+    NDJSON {
+        @Override
+        public TimedDocumentReader reader(InputStream inputStream) {
+            return new NdjsonDocumentReader(Channels.newChannel(inputStream));
+        }
+    },
+    BSON {
+        @Override
+        public TimedDocumentReader reader(InputStream inputStream) {
+            return new BsonDocumentReader(Channels.newChannel(inputStream));
+        }
+    };
+
+    public static final String GZIP_EXTENSION = ".gz";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int SNIFF_LIMIT = 1024;
+    private static final int MIN_DOCUMENT_LENGTH = 5;
+    private static final int MAX_DOCUMENT_LENGTH = 16 * 1024 * 1024;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int EOF = -1;
+
+    /**
+     * @return a reader of the documents of {@code inputStream}
+     */
+    public abstract TimedDocumentReader reader(InputStream inputStream);
+
+    /**
+     * Detects the compression and the format of the fixture at {@code location} and opens a reader on
+     * {@code inputStream}
+     *
+     * @param location      of the fixture, used to detect the format from the extension
+     * @param inputStream   of the fixture, owned by the returned reader
+     * @throws IOException in case the fixture cannot be read
+     */
+    public static TimedDocumentReader open(String location, InputStream inputStream) throws IOException {
+        InputStream buffered = new BufferedInputStream(inputStream, BUFFER_SIZE);
+        if (isGzip(buffered)) {
+            buffered = new BufferedInputStream(new GZIPInputStream(buffered, BUFFER_SIZE), BUFFER_SIZE);
+        }
+        String name = location.endsWith(GZIP_EXTENSION) ? location.substring(0, location.length() - GZIP_EXTENSION.length()) : location;
+        return detect(name, buffered).reader(buffered);
+    }
+
+    /**
+     * @param inputStream supporting {@link InputStream#mark(int)}, positioned at the start of the fixture
+     */
+    static FixtureFormat detect(String location, InputStream inputStream) throws IOException {
+        if (location.endsWith(".bson")) {
+            return BSON;
+        }
+        inputStream.mark(SNIFF_LIMIT);
+        try {
+            byte[] head = new byte[SNIFF_LIMIT];
+            int length = 0;
+            int read;
+            while (length < SNIFF_LIMIT && (read = inputStream.read(head, length, SNIFF_LIMIT - length)) != EOF) {
+                length += read;
+            }
+            if (startsWithDocument(head, length)) {
+                return BSON;
+            }
+            for (int i = 0; i < length; i++) {
+                int b = head[i] & 0xFF;
+                if (b == '[') {
+                    return JSON_ARRAY;
+                }
+                if (b == '{') {
+                    return NDJSON;
+                }
+                if (!Character.isWhitespace(b) && b != 0xEF && b != 0xBB && b != 0xBF) {
+                    break;
+                }
+            }
+            return BSON;
+        } finally {
+            inputStream.reset();
+        }
+    }
+
+    /**
+     * @param head   the first bytes of the fixture
+     * @param length of {@code head}, less than its capacity only if the fixture is that short
+     * @return whether {@code head} starts with a little-endian document length of at least 5 bytes, which fits in the
+     * fixture and points at a terminating 0x00 if the document is part of {@code head}
+     */
+    private static boolean startsWithDocument(byte[] head, int length) {
+        if (length < MIN_DOCUMENT_LENGTH) {
+            return false;
+        }
+        int documentLength = (head[0] & 0xFF) | (head[1] & 0xFF) << 8 | (head[2] & 0xFF) << 16 | (head[3] & 0xFF) << 24;
+        if (documentLength < MIN_DOCUMENT_LENGTH || documentLength > MAX_DOCUMENT_LENGTH) {
+            return false;
+        }
+        if (documentLength <= length) {
+            return head[documentLength - 1] == 0;
+        }
+        return length == head.length;
+    }
+
+    static boolean isGzip(InputStream inputStream) throws IOException {
+        inputStream.mark(2);
+        try {
+            return (inputStream.read() | inputStream.read() << 8) == GZIP_MAGIC;
+        } finally {
+            inputStream.reset();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.ingini.monogo.testbed.metrics.Phase;
+import org.ingini.monogo.testbed.metrics.PhaseTiming;
+import org.ingini.monogo.testbed.metrics.TestBedMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams the documents of a fixture into a collection, flushing the inserts in batches as configured by
+ * {@link BulkLoadOptions}. The memory footprint stays flat no matter how big the fixture is.
+ */
+public class FixtureLoader {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final BulkLoadOptions options;
+    private final TestBedMetrics metrics;
+
+    public FixtureLoader() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    public FixtureLoader(int batchSize) {
+        this(BulkLoadOptions.batchSize(batchSize));
+    }
+
+    public FixtureLoader(BulkLoadOptions options) {
+        this(options, TestBedMetrics.disabled());
+    }
+
+    /**
+     * @param metrics receiving the {@link Phase#READ}, {@link Phase#PARSE} and {@link Phase#INSERT} timings of each load
+     */
+    public FixtureLoader(BulkLoadOptions options, TestBedMetrics metrics) {
+        this.options = options;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Loads the fixture found on the classpath at {@code location} into {@code collection}, in any of the
+     * {@link FixtureFormat}s
+     *
+     * @return the number of inserted documents
+     * @throws IllegalStateException in case the fixture cannot be found or read
+     */
+    public long load(DBCollection collection, String location) {
+        CountingInputStream source = new CountingInputStream(open(location));
+        TimedDocumentReader reader = null;
+        try {
+            reader = FixtureFormat.open(location, source);
+            long inserted = load(collection, reader);
+            metrics.recordDuration(Phase.READ, collection.getName(), reader.getReadNanos(), PhaseTiming.UNKNOWN, source.getCount());
+            metrics.recordDuration(Phase.PARSE, collection.getName(), reader.getParseNanos(), inserted, PhaseTiming.UNKNOWN);
+            return inserted;
+        } catch (IOException e) {
+            logger.error("Unable to read fixture {} due to an exception!", location, e);
+            throw new IllegalStateException(e);
+        } finally {
+            Fixtures.closeQuietly(reader != null ? reader : source);
+        }
+    }
+
+    /**
+     * Drains {@code reader} into {@code collection}, the {@link Phase#INSERT} timing covering the time the load was
+     * held up by inserting
+     *
+     * @return the number of inserted documents
+     */
+    public long load(DBCollection collection, DocumentReader reader) throws IOException {
+        int batchSize = options.getBatchSize();
+        BatchInserter inserter = new BatchInserter(collection, options, null);
+        try {
+            long insertNanos = 0;
+            List<DBObject> batch = new ArrayList<DBObject>(batchSize);
+            for (DBObject document = reader.next(); document != null; document = reader.next()) {
+                batch.add(document);
+                if (batch.size() == batchSize) {
+                    long insertStart = System.nanoTime();
+                    inserter.insert(batch.toArray(new DBObject[batchSize]));
+                    insertNanos += System.nanoTime() - insertStart;
+                    batch.clear();
+                }
+            }
+            long insertStart = System.nanoTime();
+            if (!batch.isEmpty()) {
+                inserter.insert(batch.toArray(new DBObject[batch.size()]));
+            }
+            long inserted = inserter.finish();
+            insertNanos += System.nanoTime() - insertStart;
+            metrics.recordDuration(Phase.INSERT, collection.getName(), insertNanos, inserted, PhaseTiming.UNKNOWN);
+            logger.debug("Inserted {} documents into mongo collection {}", inserted, collection.getName());
+            return inserted;
+        } finally {
+            inserter.close();
+        }
+    }
+
+    private InputStream open(String location) {
+        InputStream inputStream = FixtureLoader.class.getClassLoader().getResourceAsStream(location);
+        if (inputStream == null) {
+            throw new IllegalStateException("Unable to find fixture " + location + " on the classpath!");
+        }
+        return inputStream;
+    }
+
+    public BulkLoadOptions getOptions() {
+        return options;
+    }
+}
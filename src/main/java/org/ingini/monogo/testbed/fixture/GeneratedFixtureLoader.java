@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.ingini.monogo.testbed.metrics.Phase;
+import org.ingini.monogo.testbed.metrics.PhaseTiming;
+import org.ingini.monogo.testbed.metrics.TestBedMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seeds a collection with {@code count} documents generated from a {@link DocumentTemplate}. Batches are generated
+ * through fork/join on all cores while the batches generated before are being inserted. Only a bounded window of
+ * batches is in flight, so the memory footprint stays flat whatever the count, and the batches are inserted in index
+ * order, so the same template, seed and count always yield the same collection.
+ */
+public class GeneratedFixtureLoader {
+
+    private static final int LEAF_SIZE = 256;
+    private static final int BATCHES_IN_FLIGHT_PER_THREAD = 2;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final BulkLoadOptions options;
+    private final long count;
+    private final long seed;
+    private final int parallelism;
+    private final TestBedMetrics metrics;
+
+    public GeneratedFixtureLoader(BulkLoadOptions options, long count, long seed) {
+        this(options, count, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param count       number of documents to generate
+     * @param seed        of the random values
+     * @param parallelism number of threads generating documents
+     */
+    public GeneratedFixtureLoader(BulkLoadOptions options, long count, long seed, int parallelism) {
+        this(options, count, seed, parallelism, TestBedMetrics.disabled());
+    }
+
+    /**
+     * @param metrics receiving the {@link Phase#GENERATE} timing, summed over the generating threads, and the
+     *                {@link Phase#INSERT} timing of each load
+     */
+    public GeneratedFixtureLoader(BulkLoadOptions options, long count, long seed, int parallelism, TestBedMetrics metrics) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Document count should not be negative but was " + count);
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism should be positive but was " + parallelism);
+        }
+        this.options = options;
+        this.count = count;
+        this.seed = seed;
+        this.parallelism = parallelism;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Generates the documents of the template found on the classpath at {@code location} into {@code collection}
+     *
+     * @return the number of inserted documents
+     * @throws IllegalStateException in case the template cannot be read or the generation is interrupted
+     */
+    public long load(DBCollection collection, String location) {
+        return load(collection, DocumentTemplate.load(location, seed));
+    }
+
+    public long load(DBCollection collection, DocumentTemplate template) {
+        int batchSize = options.getBatchSize();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        BatchInserter inserter = new BatchInserter(collection, options, null);
+        try {
+            AtomicLong generateNanos = new AtomicLong();
+            long insertNanos = 0;
+            Deque<GenerateBatch> inFlight = new ArrayDeque<GenerateBatch>();
+            long next = 0;
+            while (next < count || !inFlight.isEmpty()) {
+                while (next < count && inFlight.size() < parallelism * BATCHES_IN_FLIGHT_PER_THREAD) {
+                    int size = (int) Math.min(batchSize, count - next);
+                    GenerateBatch batch = new GenerateBatch(template, generateNanos, new DBObject[size], 0, next, size);
+                    pool.execute(batch);
+                    inFlight.addLast(batch);
+                    next += size;
+                }
+                GenerateBatch batch = inFlight.removeFirst();
+                batch.join();
+                long insertStart = System.nanoTime();
+                inserter.insert(batch.documents);
+                insertNanos += System.nanoTime() - insertStart;
+            }
+            long finishStart = System.nanoTime();
+            long inserted = inserter.finish();
+            insertNanos += System.nanoTime() - finishStart;
+            metrics.recordDuration(Phase.GENERATE, collection.getName(), generateNanos.get(), inserted, PhaseTiming.UNKNOWN);
+            metrics.recordDuration(Phase.INSERT, collection.getName(), insertNanos, inserted, PhaseTiming.UNKNOWN);
+            logger.debug("Inserted {} generated documents into mongo collection {}", inserted, collection.getName());
+            return inserted;
+        } finally {
+            inserter.close();
+            pool.shutdownNow();
+        }
+    }
+
+    private static final class GenerateBatch extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final DocumentTemplate template;
+        private final AtomicLong generateNanos;
+        private final DBObject[] documents;
+        private final int offset;
+        private final long firstIndex;
+        private final int length;
+
+        GenerateBatch(DocumentTemplate template, AtomicLong generateNanos, DBObject[] documents, int offset, long firstIndex, int length) {
+            this.template = template;
+            this.generateNanos = generateNanos;
+            this.documents = documents;
+            this.offset = offset;
+            this.firstIndex = firstIndex;
+            this.length = length;
+        }
+
+        @Override
+        protected void compute() {
+            if (length <= LEAF_SIZE) {
+                long start = System.nanoTime();
+                for (int i = 0; i < length; i++) {
+                    documents[offset + i] = template.generate(firstIndex + i);
+                }
+                generateNanos.addAndGet(System.nanoTime() - start);
+                return;
+            }
+            int half = length / 2;
+            invokeAll(new GenerateBatch(template, generateNanos, documents, offset, firstIndex, half),
+                    new GenerateBatch(template, generateNanos, documents, offset + half, firstIndex + half, length - half));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Tokenizes a JSON array of documents incrementally. Only the text of the current document is buffered and parsed,
+ * hence the memory footprint is bounded by the largest document instead of the whole fixture.
+ */
+public class JsonArrayDocumentReader implements TimedDocumentReader {
+
+    private static final int BUFFER_SIZE = 8192; // 8K bytes / 2 bytes = 4K characters
+    private static final int EOF = -1;
+    private static final int START = 0;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder document = new StringBuilder();
+
+    private int position;
+    private int limit;
+    private boolean started;
+    private boolean finished;
+    private long readNanos;
+    private long parseNanos;
+
+    public JsonArrayDocumentReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public DBObject next() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        int c = skipWhitespace();
+        if (!started) {
+            if (c != '[') {
+                throw new IllegalStateException("Expected a JSON array of documents but found " + describe(c));
+            }
+            started = true;
+            c = skipWhitespace();
+        } else if (c == ',') {
+            c = skipWhitespace();
+        } else if (c != ']') {
+            throw new IllegalStateException("Expected ',' or ']' after a document but found " + describe(c));
+        }
+
+        if (c == ']') {
+            finished = true;
+            return null;
+        }
+        return readDocument(c);
+    }
+
+    private DBObject readDocument(int first) throws IOException {
+        if (first != '{') {
+            throw new IllegalStateException("Expected a JSON document but found " + describe(first));
+        }
+
+        document.setLength(START);
+        document.append((char) first);
+        int depth = 1;
+        boolean inString = false;
+        boolean escaped = false;
+        while (depth > 0) {
+            int c = read();
+            if (c == EOF) {
+                throw new IllegalStateException("Unexpected end of fixture inside a JSON document");
+            }
+            document.append((char) c);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+
+        long parseStart = System.nanoTime();
+        try {
+            return (DBObject) JSON.parse(document.toString(), new MongoIdTransformerJSONCallback());
+        } finally {
+            parseNanos += System.nanoTime() - parseStart;
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c = read();
+        while (c != EOF && Character.isWhitespace(c)) {
+            c = read();
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            long readStart = System.nanoTime();
+            limit = reader.read(buffer, START, BUFFER_SIZE);
+            readNanos += System.nanoTime() - readStart;
+            position = START;
+            if (limit == EOF) {
+                limit = START;
+                return EOF;
+            }
+        }
+        return buffer[position++];
+    }
+
+    @Override
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    @Override
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    private static String describe(int c) {
+        return c == EOF ? "end of fixture" : "'" + (char) c + "'";
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
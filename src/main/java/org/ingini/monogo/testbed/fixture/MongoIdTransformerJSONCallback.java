@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import org.bson.BSONObject;
+import org.bson.types.ObjectId;
+
+/**
+ * A JSON callback converting {@code _id} string values into {@link ObjectId}s, as expected by the legacy JSON array
+ * fixtures
+ */
+public class MongoIdTransformerJSONCallback extends ExtendedJsonCallback {
+
+    private static final String MONGO_ID_KEY = "_id";
+
+    @Override
+    public Object objectDone() {
+        Object done = super.objectDone();
+        if (!(done instanceof BSONObject)) {
+            // an Extended JSON value such as {"$oid": ...} or {"$date": ...}
+            return done;
+        }
+        BSONObject b = (BSONObject) done;
+        if (b.containsField(MONGO_ID_KEY) && b.get(MONGO_ID_KEY) instanceof String) {
+            b.put(MONGO_ID_KEY, new ObjectId(b.get(MONGO_ID_KEY).toString()));
+        }
+        return b;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Reads newline-delimited JSON, one (Extended JSON) document per line as written by {@code mongoexport}. The channel
+ * is read in chunks and only the current line is buffered. Blank lines are skipped.
+ */
+public class NdjsonDocumentReader implements TimedDocumentReader {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int EOF = -1;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+
+    private byte[] line = new byte[1024];
+    private int lineLength;
+    private long lineNumber;
+    private boolean finished;
+    private long readNanos;
+    private long parseNanos;
+
+    public NdjsonDocumentReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        chunk.flip();
+    }
+
+    @Override
+    public DBObject next() throws IOException {
+        while (!finished) {
+            if (!chunk.hasRemaining() && !fill()) {
+                finished = true;
+            } else if (!readLine()) {
+                continue;
+            }
+            DBObject document = parseLine();
+            lineLength = 0;
+            if (document != null) {
+                return document;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Appends the chunk up to the next line feed to the current line
+     *
+     * @return whether the line is complete
+     */
+    private boolean readLine() {
+        byte[] bytes = chunk.array();
+        int start = chunk.position();
+        int end = start;
+        while (end < chunk.limit() && bytes[end] != '\n') {
+            end++;
+        }
+        append(bytes, start, end - start);
+        boolean complete = end < chunk.limit();
+        chunk.position(complete ? end + 1 : end);
+        return complete;
+    }
+
+    private void append(byte[] bytes, int offset, int length) {
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(bytes, offset, line, lineLength, length);
+        lineLength += length;
+    }
+
+    private DBObject parseLine() {
+        lineNumber++;
+        String text = new String(line, 0, lineLength, Fixtures.UTF_8).trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+        long parseStart = System.nanoTime();
+        try {
+            return (DBObject) JSON.parse(text, new ExtendedJsonCallback());
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Unable to parse the document on line " + lineNumber + " of the fixture", e);
+        } finally {
+            parseNanos += System.nanoTime() - parseStart;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        long readStart = System.nanoTime();
+        chunk.clear();
+        int read = channel.read(chunk);
+        chunk.flip();
+        readNanos += System.nanoTime() - readStart;
+        return read != EOF;
+    }
+
+    @Override
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    @Override
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+import com.mongodb.DBCollection;
+import org.ingini.monogo.testbed.metrics.Phase;
+import org.ingini.monogo.testbed.metrics.PhaseTiming;
+import org.ingini.monogo.testbed.metrics.TestBedMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads one large fixture through several readers. The file is split into byte ranges, on line boundaries for NDJSON
+ * and on document boundaries for BSON, and every reader parses its range and inserts the documents through a
+ * connection of its own. A reader only parses the next batch once mongo took the previous one, so parsing never gets
+ * ahead of the inserts. Mind that the connection pool of the {@code Mongo} instance must allow for as many
+ * connections as there are readers.
+ * <p>Only uncompressed NDJSON and BSON files on the file system can be split; any other fixture is streamed through a
+ * single {@link FixtureLoader}.</p>
+ */
+public class ParallelFixtureLoader {
+
+    private static final long MAPPING_WINDOW = 64L * 1024 * 1024; // comfortably above the 16MB max document size
+    private static final int SCAN_BUFFER_SIZE = 8192;
+    private static final int INT_SIZE = 4;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final BulkLoadOptions options;
+    private final int readers;
+    private final TestBedMetrics metrics;
+
+    public ParallelFixtureLoader(BulkLoadOptions options, int readers) {
+        this(options, readers, TestBedMetrics.disabled());
+    }
+
+    /**
+     * @param options of each reader, the number of insert connections is ignored as every reader inserts on its own
+     * @param readers positive number of concurrent readers
+     * @param metrics receiving the summed {@link Phase#READ} and {@link Phase#PARSE} timings of all readers and the
+     *                elapsed {@link Phase#INSERT} timing of each load
+     */
+    public ParallelFixtureLoader(BulkLoadOptions options, int readers, TestBedMetrics metrics) {
+        if (readers < 1) {
+            throw new IllegalArgumentException("Readers should be positive but were " + readers);
+        }
+        this.options = new BulkLoadOptions(options.getBatchSize(), options.getWriteConcern(), options.isOrdered(), 1);
+        this.readers = readers;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Loads the fixture found on the classpath at {@code location} into {@code collection}
+     *
+     * @return the number of inserted documents
+     * @throws IllegalStateException in case the fixture cannot be found or read
+     */
+    public long load(DBCollection collection, String location) {
+        File file = fileOf(location);
+        try {
+            FixtureFormat format = file == null ? null : splittableFormat(file);
+            if (format == null) {
+                logger.debug("Fixture {} cannot be split, loading it through a single reader", location);
+                return new FixtureLoader(options, metrics).load(collection, location);
+            }
+            return load(collection, file, format);
+        } catch (IOException e) {
+            logger.error("Unable to read fixture {} due to an exception!", location, e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Loads an NDJSON or BSON {@code file} into {@code collection}
+     *
+     * @return the number of inserted documents
+     */
+    public long load(final DBCollection collection, File file, final FixtureFormat format) throws IOException {
+        if (format == FixtureFormat.JSON_ARRAY) {
+            throw new IllegalArgumentException("A JSON array cannot be split, use the FixtureLoader instead");
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        ExecutorService executor = Executors.newFixedThreadPool(readers, new ReaderThreadFactory(collection.getName()));
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            long startedAt = System.nanoTime();
+            long[] boundaries = boundaries(channel, file, format);
+
+            List<Future<TimedResult>> ranges = new ArrayList<Future<TimedResult>>();
+            for (int i = 0; i < readers; i++) {
+                final long start = boundaries[i];
+                final long end = boundaries[i + 1];
+                ranges.add(executor.submit(new Callable<TimedResult>() {
+                    @Override
+                    public TimedResult call() throws IOException {
+                        return loadRange(collection, format, new FileRangeChannel(channel, start, end));
+                    }
+                }));
+            }
+
+            long inserted = 0;
+            long readNanos = 0;
+            long parseNanos = 0;
+            Throwable failure = null;
+            for (Future<TimedResult> range : ranges) {
+                try {
+                    TimedResult result = range.get();
+                    inserted += result.inserted;
+                    readNanos += result.readNanos;
+                    parseNanos += result.parseNanos;
+                } catch (ExecutionException e) {
+                    logger.error("Unable to load a range of {} due to an exception!", file, e.getCause());
+                    failure = failure == null ? e.getCause() : failure;
+                }
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Unable to load " + file + " into mongo collection " + collection.getName(), failure);
+            }
+            long elapsedNanos = System.nanoTime() - startedAt;
+            metrics.recordDuration(Phase.READ, collection.getName(), readNanos, PhaseTiming.UNKNOWN, channel.size());
+            metrics.recordDuration(Phase.PARSE, collection.getName(), parseNanos, inserted, PhaseTiming.UNKNOWN);
+            metrics.recordDuration(Phase.INSERT, collection.getName(), elapsedNanos, inserted, channel.size());
+            logger.debug("Inserted {} documents into mongo collection {} through {} readers", new Object[]{inserted, collection.getName(), readers});
+            return inserted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading mongo collection " + collection.getName(), e);
+        } finally {
+            executor.shutdownNow();
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * @return the start of each range {@code file} is split into, followed by the size of the file
+     */
+    public long[] split(File file, FixtureFormat format) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return boundaries(randomAccessFile.getChannel(), file, format);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private long[] boundaries(FileChannel channel, File file, FixtureFormat format) throws IOException {
+        return format == FixtureFormat.BSON ? documentBoundaries(channel, file) : lineBoundaries(channel);
+    }
+
+    private TimedResult loadRange(DBCollection collection, FixtureFormat format, FileRangeChannel range) throws IOException {
+        TimedDocumentReader reader = format == FixtureFormat.BSON ? new BsonDocumentReader(range) : new NdjsonDocumentReader(range);
+        try {
+            long inserted = new FixtureLoader(options).load(collection, reader);
+            return new TimedResult(inserted, reader.getReadNanos(), reader.getParseNanos());
+        } finally {
+            Fixtures.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * @return the start of each range, followed by the end of the file; every range starts at the beginning of a line
+     */
+    private long[] lineBoundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long[] boundaries = new long[readers + 1];
+        boundaries[readers] = size;
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        for (int i = 1; i < readers; i++) {
+            long position = Math.max(boundaries[i - 1], size / readers * i);
+            boundaries[i] = size;
+            scan:
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                for (int offset = 0; offset < read; offset++) {
+                    if (buffer.get(offset) == '\n') {
+                        boundaries[i] = position + offset + 1;
+                        break scan;
+                    }
+                }
+                position += Math.max(read, 0);
+            }
+        }
+        return boundaries;
+    }
+
+    /**
+     * @return the start of each range, followed by the end of the file; every range starts at the beginning of a
+     * document, found by walking the document lengths through memory-mapped windows
+     */
+    private long[] documentBoundaries(FileChannel channel, File file) throws IOException {
+        long size = channel.size();
+        long[] boundaries = new long[readers + 1];
+        boundaries[readers] = size;
+        int next = 1;
+        long position = 0;
+        while (position < size && next < readers) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPING_WINDOW, size - position));
+            window.order(ByteOrder.LITTLE_ENDIAN);
+            int offset = 0;
+            while (offset + INT_SIZE <= window.limit() && next < readers) {
+                long documentStart = position + offset;
+                while (next < readers && documentStart >= size / readers * next) {
+                    boundaries[next++] = documentStart;
+                }
+                int length = window.getInt(offset);
+                if (length < INT_SIZE + 1) {
+                    throw new IOException("Corrupted BSON fixture " + file + " at offset " + documentStart);
+                }
+                if (offset + length > window.limit()) {
+                    break;
+                }
+                offset += length;
+            }
+            if (offset == 0 && next < readers) {
+                throw new IOException("Truncated BSON fixture " + file + " at offset " + position);
+            }
+            position += offset;
+        }
+        while (next < readers) {
+            boundaries[next++] = size;
+        }
+        return boundaries;
+    }
+
+    private FixtureFormat splittableFormat(File file) throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+        try {
+            if (FixtureFormat.isGzip(inputStream)) {
+                return null;
+            }
+            FixtureFormat format = FixtureFormat.detect(file.getName(), inputStream);
+            return format == FixtureFormat.JSON_ARRAY ? null : format;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static File fileOf(String location) {
+        URL url = ParallelFixtureLoader.class.getClassLoader().getResource(location);
+        if (url == null) {
+            throw new IllegalStateException("Unable to find fixture " + location + " on the classpath!");
+        }
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static class TimedResult {
+
+        final long inserted;
+        final long readNanos;
+        final long parseNanos;
+
+        TimedResult(long inserted, long readNanos, long parseNanos) {
+            this.inserted = inserted;
+            this.readNanos = readNanos;
+            this.parseNanos = parseNanos;
+        }
+    }
+
+    private static class ReaderThreadFactory implements ThreadFactory {
+
+        private final String collection;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        ReaderThreadFactory(String collection) {
+            this.collection = collection;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "mongo-testbed-reader-" + collection + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.fixture;
+
+/**
+ * A {@link DocumentReader} keeping track of the time spent reading its source and parsing the documents
+ */
+public interface TimedDocumentReader extends DocumentReader {
+
+    /**
+     * @return the time spent reading the underlying source so far
+     */
+    long getReadNanos();
+
+    /**
+     * @return the time spent parsing the documents read so far
+     */
+    long getParseNanos();
+}
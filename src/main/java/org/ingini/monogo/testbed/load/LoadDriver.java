@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.load;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a weighted mix of {@link LoadOperation}s from many threads: first an unmeasured warmup, then the measured load
+ * until the duration is over or the operation count is reached, whichever comes first. With a target rate the
+ * operations are issued on a fixed schedule and their latency is measured from the scheduled start, so that a stalled
+ * server shows up in the percentiles instead of silently lowering the rate.
+ * <p>Example:</p>
+ * <p>LoadReport report = mongoManager.loadDriver().withOperation("find", 9, find).withOperation("insert", 1, insert)
+ * .withThreads(16).withDuration(10, TimeUnit.SECONDS).run();</p>
+ */
+public class LoadDriver {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final List<String> names = new ArrayList<String>();
+    private final List<LoadOperation> operations = new ArrayList<LoadOperation>();
+    private final List<Integer> weights = new ArrayList<Integer>();
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean virtualThreads;
+    private long warmupNanos;
+    private long durationNanos;
+    private long operationCount;
+    private double targetRate;
+
+    /**
+     * Adds an operation to the mix, executed with a probability proportional to {@code weight}
+     *
+     * @return this driver
+     */
+    public LoadDriver withOperation(String name, int weight, LoadOperation operation) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight of operation " + name + " should be positive but was " + weight);
+        }
+        if (names.contains(name)) {
+            throw new IllegalArgumentException("Operation " + name + " is already part of the load");
+        }
+        names.add(name);
+        operations.add(operation);
+        weights.add(weight);
+        return this;
+    }
+
+    /**
+     * @param threads positive number of threads executing operations concurrently
+     * @return this driver
+     */
+    public LoadDriver withThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads should be positive but were " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Runs the load on virtual threads where the JDK supports them, on platform threads otherwise
+     *
+     * @return this driver
+     */
+    public LoadDriver withVirtualThreads() {
+        this.virtualThreads = true;
+        return this;
+    }
+
+    /**
+     * @return this driver
+     */
+    public LoadDriver withWarmup(long warmup, TimeUnit unit) {
+        this.warmupNanos = unit.toNanos(warmup);
+        return this;
+    }
+
+    /**
+     * @return this driver
+     */
+    public LoadDriver withDuration(long duration, TimeUnit unit) {
+        this.durationNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * @param operationCount positive number of measured operations over all threads
+     * @return this driver
+     */
+    public LoadDriver withOperationCount(long operationCount) {
+        if (operationCount < 1) {
+            throw new IllegalArgumentException("Operation count should be positive but was " + operationCount);
+        }
+        this.operationCount = operationCount;
+        return this;
+    }
+
+    /**
+     * @param operationsPerSecond the rate at which operations are issued over all threads
+     * @return this driver
+     */
+    public LoadDriver withTargetRate(double operationsPerSecond) {
+        if (operationsPerSecond <= 0) {
+            throw new IllegalArgumentException("Target rate should be positive but was " + operationsPerSecond);
+        }
+        this.targetRate = operationsPerSecond;
+        return this;
+    }
+
+    /**
+     * Runs the warmup and then the measured load
+     *
+     * @throws IllegalStateException in case there is no operation, neither duration nor operation count, or the load
+     *                               is interrupted
+     */
+    public LoadReport run() {
+        if (operations.isEmpty()) {
+            throw new IllegalStateException("A load needs at least one operation");
+        }
+        if (durationNanos == 0 && operationCount == 0) {
+            throw new IllegalStateException("A load needs a duration or an operation count");
+        }
+        ExecutorService executor = newExecutor();
+        try {
+            if (warmupNanos > 0) {
+                logger.debug("Warming up for {} ms on {} threads", TimeUnit.NANOSECONDS.toMillis(warmupNanos), threads);
+                runPhase(executor, warmupNanos, 0, null);
+            }
+            List<OperationStats> stats = new ArrayList<OperationStats>();
+            for (String name : names) {
+                stats.add(new OperationStats(name));
+            }
+            long elapsedNanos = runPhase(executor, durationNanos, operationCount, stats);
+            LoadReport report = new LoadReport(stats, elapsedNanos);
+            logger.info("Load finished:\n{}", report);
+            return report;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param stats {@code null} to discard the measurements
+     * @return the elapsed time of the phase
+     */
+    private long runPhase(ExecutorService executor, long phaseNanos, final long limit, final List<OperationStats> stats) {
+        final long startedAt = System.nanoTime();
+        final long deadline = phaseNanos > 0 ? startedAt + phaseNanos : Long.MAX_VALUE;
+        final AtomicLong issued = new AtomicLong();
+        List<Future<Void>> workers = new ArrayList<Future<Void>>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    work(startedAt, deadline, limit, issued, stats);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the load", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load driver thread failed", e.getCause());
+        }
+        return System.nanoTime() - startedAt;
+    }
+
+    private void work(long startedAt, long deadline, long limit, AtomicLong issued, List<OperationStats> stats) {
+        double intervalNanos = targetRate > 0 ? TimeUnit.SECONDS.toNanos(1) / targetRate : 0;
+        int totalWeight = 0;
+        for (int weight : weights) {
+            totalWeight += weight;
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            long ticket = issued.getAndIncrement();
+            if (limit > 0 && ticket >= limit) {
+                return;
+            }
+            long scheduled = intervalNanos > 0 ? startedAt + (long) (ticket * intervalNanos) : System.nanoTime();
+            if (scheduled >= deadline || System.nanoTime() >= deadline) {
+                return;
+            }
+            for (long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+
+            int index = pick(ThreadLocalRandom.current().nextInt(totalWeight));
+            long start = intervalNanos > 0 ? scheduled : System.nanoTime();
+            try {
+                operations.get(index).execute();
+                if (stats != null) {
+                    stats.get(index).getLatencies().record(System.nanoTime() - start);
+                }
+            } catch (Exception e) {
+                if (stats != null && stats.get(index).recordError() == 1) {
+                    logger.warn("Operation {} failed, further failures are only counted", names.get(index), e);
+                }
+            }
+        }
+    }
+
+    private int pick(int draw) {
+        for (int index = 0; index < weights.size(); index++) {
+            draw -= weights.get(index);
+            if (draw < 0) {
+                return index;
+            }
+        }
+        return weights.size() - 1;
+    }
+
+    private ExecutorService newExecutor() {
+        if (virtualThreads) {
+            try {
+                // virtual threads exist from JDK 21 on, while the testbed still runs on older JDKs
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (NoSuchMethodException e) {
+                logger.warn("Virtual threads are not supported by this JDK, using {} platform threads", threads);
+            } catch (Exception e) {
+                logger.warn("Unable to create virtual threads, using {} platform threads: {}", threads, e.toString());
+            }
+        }
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mongo-testbed-load-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
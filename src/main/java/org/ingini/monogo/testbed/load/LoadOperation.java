@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.load;
+
+/**
+ * A single operation of a load mix, e.g. a find or an insert on an injected collection. Implementations are called
+ * concurrently from all threads of the {@link LoadDriver}.
+ */
+public interface LoadOperation {
+
+    /**
+     * @throws Exception counted as error of the operation, the load goes on
+     */
+    void execute() throws Exception;
+}
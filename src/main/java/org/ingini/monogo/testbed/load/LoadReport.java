@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.load;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency percentiles of the measured part of a load, per operation type and in total
+ */
+public class LoadReport {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<OperationStats> operations;
+    private final long elapsedNanos;
+
+    public LoadReport(List<OperationStats> operations, long elapsedNanos) {
+        this.operations = Collections.unmodifiableList(new ArrayList<OperationStats>(operations));
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<OperationStats> getOperations() {
+        return operations;
+    }
+
+    /**
+     * @throws IllegalArgumentException in case the load had no operation named {@code name}
+     */
+    public OperationStats getOperation(String name) {
+        for (OperationStats operation : operations) {
+            if (operation.getName().equals(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("No operation " + name + " in the load");
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (OperationStats operation : operations) {
+            count += operation.getCount();
+        }
+        return count;
+    }
+
+    public long getErrors() {
+        long errors = 0;
+        for (OperationStats operation : operations) {
+            errors += operation.getErrors();
+        }
+        return errors;
+    }
+
+    /**
+     * @return successful operations per second over all operation types
+     */
+    public double getThroughput() {
+        return throughput(getCount());
+    }
+
+    /**
+     * @return successful executions of the operation named {@code name} per second
+     */
+    public double getThroughput(String name) {
+        return throughput(getOperation(name).getCount());
+    }
+
+    private double throughput(long count) {
+        return elapsedNanos == 0 ? 0 : count * NANOS_PER_SECOND / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "%d operations in %.1f ms, %.1f ops/s, %d errors%n", getCount(), elapsedNanos / NANOS_PER_MILLI, getThroughput(), getErrors()));
+        report.append(String.format(Locale.ROOT, "%-20s %10s %8s %12s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (OperationStats operation : operations) {
+            LatencyHistogram latencies = operation.getLatencies();
+            report.append(String.format(Locale.ROOT, "%-20s %10d %8d %12.1f %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    operation.getName(), operation.getCount(), operation.getErrors(), throughput(operation.getCount()),
+                    latencies.getValueAtPercentile(50) / NANOS_PER_MILLI, latencies.getValueAtPercentile(90) / NANOS_PER_MILLI,
+                    latencies.getValueAtPercentile(99) / NANOS_PER_MILLI, latencies.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                    latencies.getMaxNanos() / NANOS_PER_MILLI));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Appends the timings of every finished test class to a file, either as CSV with a header line or as one JSON object
+ * per line. Writing failures are logged and never fail the tests.
+ */
+public class FileMetricsListener implements TestBedListener {
+
+    public enum Format {
+        CSV, JSON
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String CSV_HEADER = "test_class,phase,collection,duration_ms,documents,bytes";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final File file;
+    private final Format format;
+
+    public FileMetricsListener(File file, Format format) {
+        this.file = file;
+        this.format = format;
+    }
+
+    public static FileMetricsListener csv(File file) {
+        return new FileMetricsListener(file, Format.CSV);
+    }
+
+    public static FileMetricsListener json(File file) {
+        return new FileMetricsListener(file, Format.JSON);
+    }
+
+    @Override
+    public void phaseCompleted(PhaseTiming timing) {
+        // written in one go once the test class is finished
+    }
+
+    @Override
+    public void testClassFinished(String testClass, List<PhaseTiming> timings) {
+        try {
+            write(timings);
+        } catch (IOException e) {
+            logger.error("Unable to write mongo testbed metrics to {} due to an exception!", file, e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private synchronized void write(List<PhaseTiming> timings) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        boolean header = format == Format.CSV && file.length() == 0;
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8);
+        try {
+            if (header) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            for (PhaseTiming timing : timings) {
+                writer.write(format == Format.CSV ? csv(timing) : json(timing));
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    static String csv(PhaseTiming timing) {
+        return csvValue(timing.getTestClass()) + "," + timing.getPhase() + "," + csvValue(timing.getCollection()) + ","
+                + String.format(Locale.ROOT, "%.3f", timing.getDurationMillis()) + "," + count(timing.getDocuments()) + "," + count(timing.getBytes());
+    }
+
+    static String json(PhaseTiming timing) {
+        return "{\"test_class\": " + jsonValue(timing.getTestClass())
+                + ", \"phase\": \"" + timing.getPhase() + "\""
+                + ", \"collection\": " + jsonValue(timing.getCollection())
+                + ", \"duration_ms\": " + String.format(Locale.ROOT, "%.3f", timing.getDurationMillis())
+                + ", \"documents\": " + (timing.getDocuments() == PhaseTiming.UNKNOWN ? "null" : timing.getDocuments())
+                + ", \"bytes\": " + (timing.getBytes() == PhaseTiming.UNKNOWN ? "null" : timing.getBytes()) + "}";
+    }
+
+    private static String count(long value) {
+        return value == PhaseTiming.UNKNOWN ? "" : String.valueOf(value);
+    }
+
+    private static String csvValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    private static String jsonValue(String value) {
+        return value == null ? "null" : "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.metrics;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Writes the timings of each test class to a CSV file of its own and attaches the file to the JUnit report of the
+ * class by printing the {@code [[ATTACHMENT|path]]} marker, as understood by the Jenkins JUnit attachments plugin,
+ * to the standard output captured for the class
+ */
+public class JUnitAttachmentListener implements TestBedListener {
+
+    public static final String DEFAULT_DIRECTORY = "target/mongo-testbed/metrics";
+
+    private final File directory;
+
+    public JUnitAttachmentListener() {
+        this(new File(DEFAULT_DIRECTORY));
+    }
+
+    public JUnitAttachmentListener(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void phaseCompleted(PhaseTiming timing) {
+        // attached once the test class is finished
+    }
+
+    @Override
+    public void testClassFinished(String testClass, List<PhaseTiming> timings) {
+        File attachment = new File(directory, testClass + "-testbed-metrics.csv");
+        if (attachment.exists() && !attachment.delete()) {
+            return;
+        }
+        FileMetricsListener.csv(attachment).testClassFinished(testClass, timings);
+        System.out.println("[[ATTACHMENT|" + attachment.getAbsolutePath() + "]]");
+    }
+}
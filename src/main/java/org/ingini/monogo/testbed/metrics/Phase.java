@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.metrics;
+
+/**
+ * The timed phases of the testbed lifecycle
+ */
+public enum Phase {
+
+    /** extracting and launching the mongo process */
+    PROCESS_START,
+    /** waiting for the launched process to accept connections */
+    READINESS,
+    CONNECT,
+    DROP,
+    CREATE,
+    /** recreating a collection from its fixture cache template */
+    RESTORE,
+    /** reading the fixture source, the byte count being the size of the source */
+    READ,
+    /** turning the fixture source into documents */
+    PARSE,
+    /** generating documents from a fixture template */
+    GENERATE,
+    /** sending the documents to mongo until they are acknowledged */
+    INSERT,
+    INDEX,
+    INJECT,
+    /** stopping the mongo process or releasing the database */
+    STOP,
+    /** removing the extracted mongo executable */
+    CLEANUP
+
+}
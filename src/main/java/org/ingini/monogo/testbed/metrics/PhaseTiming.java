@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The duration of a single {@link Phase}, along with the amount of data it processed
+ */
+public class PhaseTiming {
+
+    public static final long UNKNOWN = -1;
+
+    private final String testClass;
+    private final Phase phase;
+    private final String collection;
+    private final long durationNanos;
+    private final long documents;
+    private final long bytes;
+
+    /**
+     * @param testClass  name of the test class the phase ran for, {@code null} if not known yet
+     * @param collection the phase worked on, {@code null} for phases not related to a collection
+     * @param documents  processed by the phase or {@value #UNKNOWN}
+     * @param bytes      processed by the phase or {@value #UNKNOWN}
+     */
+    public PhaseTiming(String testClass, Phase phase, String collection, long durationNanos, long documents, long bytes) {
+        this.testClass = testClass;
+        this.phase = phase;
+        this.collection = collection;
+        this.durationNanos = durationNanos;
+        this.documents = documents;
+        this.bytes = bytes;
+    }
+
+    PhaseTiming forTestClass(String testClass) {
+        return new PhaseTiming(testClass, phase, collection, durationNanos, documents, bytes);
+    }
+
+    public String getTestClass() {
+        return testClass;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public double getDurationMillis() {
+        return durationNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public long getDocuments() {
+        return documents;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return phase + (collection == null ? "" : " " + collection) + " took " + String.format("%.3f", getDurationMillis()) + " ms"
+                + (documents == UNKNOWN ? "" : ", " + documents + " documents")
+                + (bytes == UNKNOWN ? "" : ", " + bytes + " bytes");
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Logs every phase at debug level and a per-phase summary of each test class at info level
+ */
+public class Slf4jMetricsListener implements TestBedListener {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Override
+    public void phaseCompleted(PhaseTiming timing) {
+        logger.debug("{}: {}", timing.getTestClass(), timing);
+    }
+
+    @Override
+    public void testClassFinished(String testClass, List<PhaseTiming> timings) {
+        Map<Phase, Long> totals = new EnumMap<Phase, Long>(Phase.class);
+        long total = 0;
+        for (PhaseTiming timing : timings) {
+            Long phaseTotal = totals.get(timing.getPhase());
+            totals.put(timing.getPhase(), (phaseTotal == null ? 0 : phaseTotal) + timing.getDurationNanos());
+            total += timing.getDurationNanos();
+        }
+        StringBuilder summary = new StringBuilder();
+        for (Map.Entry<Phase, Long> phaseTotal : totals.entrySet()) {
+            summary.append(summary.length() == 0 ? "" : ", ").append(phaseTotal.getKey()).append('=')
+                    .append(phaseTotal.getValue() / 1000000).append(" ms");
+        }
+        logger.info("Mongo TestBed of {} took {} ms in total ({})", new Object[]{testClass, total / 1000000, summary});
+    }
+}
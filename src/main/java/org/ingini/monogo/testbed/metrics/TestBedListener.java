@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.metrics;
+
+import java.util.List;
+
+/**
+ * Receives the timings of the testbed lifecycle. Listeners may be called from the seeding threads, but never
+ * concurrently.
+ */
+public interface TestBedListener {
+
+    /**
+     * Called as soon as a phase is over. Phases which ran before the test class was known, such as starting the mongo
+     * process, are reported once the test class starts.
+     */
+    void phaseCompleted(PhaseTiming timing);
+
+    /**
+     * Called once the testbed of {@code testClass} has been stopped
+     *
+     * @param timings all phases of the test class in completion order
+     */
+    void testClassFinished(String testClass, List<PhaseTiming> timings);
+
+}
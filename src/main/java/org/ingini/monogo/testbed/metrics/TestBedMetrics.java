@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the {@link PhaseTiming}s of a testbed and dispatches them to the registered {@link TestBedListener}s.
+ * Timings recorded before {@link #testClassStarted(String)}, e.g. while the mongo process is started, are kept and
+ * attributed to the test class once it is known.
+ */
+public class TestBedMetrics {
+
+    private final List<TestBedListener> listeners = new ArrayList<TestBedListener>();
+    private final List<PhaseTiming> timings = new ArrayList<PhaseTiming>();
+
+    private final boolean enabled;
+    private String testClass;
+
+    public TestBedMetrics() {
+        this(true);
+    }
+
+    private TestBedMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return a collector dropping every timing, which can be passed where no metrics are wanted
+     */
+    public static TestBedMetrics disabled() {
+        return new TestBedMetrics(false);
+    }
+
+    public synchronized void addListener(TestBedListener listener) {
+        listeners.add(listener);
+        if (testClass != null) {
+            for (PhaseTiming timing : timings) {
+                listener.phaseCompleted(timing);
+            }
+        }
+    }
+
+    public synchronized void testClassStarted(String testClass) {
+        this.testClass = testClass;
+        for (int i = 0; i < timings.size(); i++) {
+            timings.set(i, timings.get(i).forTestClass(testClass));
+            dispatch(timings.get(i));
+        }
+    }
+
+    public synchronized void testClassFinished() {
+        if (testClass == null) {
+            return;
+        }
+        List<PhaseTiming> finished = Collections.unmodifiableList(new ArrayList<PhaseTiming>(timings));
+        for (TestBedListener listener : listeners) {
+            listener.testClassFinished(testClass, finished);
+        }
+        timings.clear();
+        testClass = null;
+    }
+
+    /**
+     * Records a phase which started at {@code startNanos} (as returned by {@link System#nanoTime()}) and is over now
+     */
+    public void record(Phase phase, String collection, long startNanos) {
+        record(phase, collection, startNanos, PhaseTiming.UNKNOWN, PhaseTiming.UNKNOWN);
+    }
+
+    public void record(Phase phase, String collection, long startNanos, long documents, long bytes) {
+        recordDuration(phase, collection, System.nanoTime() - startNanos, documents, bytes);
+    }
+
+    public synchronized void recordDuration(Phase phase, String collection, long durationNanos, long documents, long bytes) {
+        if (!enabled) {
+            return;
+        }
+        PhaseTiming timing = new PhaseTiming(testClass, phase, collection, durationNanos, documents, bytes);
+        timings.add(timing);
+        if (testClass != null) {
+            dispatch(timing);
+        }
+    }
+
+    private void dispatch(PhaseTiming timing) {
+        for (TestBedListener listener : listeners) {
+            listener.phaseCompleted(timing);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.process;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A database leased from the {@link MongoBroker} of the build. The lease holds a connection to the broker until it is
+ * {@link #release()}d; a JVM dying with its leases simply closes the connection and the broker drops the databases
+ * anyway. In case no broker is running, the first JVM to get hold of the lock file of the broker directory spawns
+ * one, with the classpath of the current JVM, and the others wait for it.
+ */
+public class BrokerLease {
+
+    public static final long DEFAULT_STARTUP_TIMEOUT_MILLIS = 120000;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final long INITIAL_BACKOFF_MILLIS = 10;
+    private static final long MAX_BACKOFF_MILLIS = 500;
+    private static final List<String> FORWARDED_PROPERTIES = Arrays.asList(MongoBroker.INSTANCES_PROPERTY,
+            MongoBroker.IDLE_PROPERTY, CachingMongodStarter.BINARIES_PROPERTY);
+
+    private static final Logger logger = LoggerFactory.getLogger(BrokerLease.class);
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+    private final int port;
+    private final String databaseName;
+
+    private BrokerLease(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), MongoBroker.CHARSET));
+        this.out = new OutputStreamWriter(socket.getOutputStream(), MongoBroker.CHARSET);
+        send(MongoBroker.LEASE);
+        String reply = in.readLine();
+        if (reply == null || !reply.startsWith(MongoBroker.LEASED + " ")) {
+            throw new IOException("Unexpected mongo broker reply: " + reply);
+        }
+        String[] leased = reply.split(" ");
+        this.port = Integer.parseInt(leased[1]);
+        this.databaseName = leased[2];
+    }
+
+    /**
+     * Leases a database from the broker of the {@link MongoBroker#directory()}, starting the broker if necessary
+     */
+    public static BrokerLease lease() throws IOException {
+        return lease(MongoBroker.directory(), DEFAULT_STARTUP_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param directory            of the broker
+     * @param startupTimeoutMillis deadline for a spawned broker to become ready
+     * @throws IOException in case no broker can be reached nor started
+     */
+    public static synchronized BrokerLease lease(File directory, long startupTimeoutMillis) throws IOException {
+        BrokerLease lease = tryLease(directory);
+        if (lease == null) {
+            startBroker(directory, startupTimeoutMillis);
+            lease = tryLease(directory);
+        }
+        if (lease == null) {
+            throw new IOException("Unable to lease a database from the mongo broker in " + directory);
+        }
+        logger.debug("Leased database {} on mongod port {} from the mongo broker", lease.databaseName, lease.port);
+        return lease;
+    }
+
+    /**
+     * Hands the database back to the broker, which drops it in the background
+     */
+    public void release() {
+        try {
+            send(MongoBroker.RELEASE + " " + databaseName);
+            in.readLine();
+        } catch (IOException e) {
+            logger.debug("Unable to release database {}, the broker drops it anyway: {}", databaseName, e.getMessage());
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // the broker notices the closed connection either way
+            }
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    private void send(String line) throws IOException {
+        out.write(line + "\n");
+        out.flush();
+    }
+
+    private static BrokerLease tryLease(File directory) {
+        Integer brokerPort = readPort(directory);
+        if (brokerPort == null) {
+            return null;
+        }
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getByName(null), brokerPort), CONNECT_TIMEOUT_MILLIS);
+            return new BrokerLease(socket);
+        } catch (IOException e) {
+            logger.debug("No mongo broker on port {}: {}", brokerPort, e.getMessage());
+            try {
+                socket.close();
+            } catch (IOException closing) {
+                // not connected anyway
+            }
+            return null;
+        }
+    }
+
+    private static void startBroker(File directory, long startupTimeoutMillis) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Unable to create broker directory " + directory);
+        }
+        RandomAccessFile lockFile = new RandomAccessFile(new File(directory, MongoBroker.LOCK_FILE), "rw");
+        try {
+            FileLock lock = lockFile.getChannel().lock();
+            try {
+                Integer brokerPort = readPort(directory);
+                if (brokerPort != null && acceptsConnections(brokerPort)) {
+                    logger.debug("Mongo broker started by another JVM on port {}", brokerPort);
+                    return;
+                }
+                // left behind by a broker which did not stop cleanly
+                new File(directory, MongoBroker.PORT_FILE).delete();
+                awaitBroker(directory, spawn(directory), TimeUnit.MILLISECONDS.toNanos(startupTimeoutMillis));
+            } finally {
+                lock.release();
+            }
+        } finally {
+            lockFile.close();
+        }
+    }
+
+    private static Process spawn(File directory) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-D" + MongoBroker.DIRECTORY_PROPERTY + "=" + directory.getPath());
+        for (String property : FORWARDED_PROPERTIES) {
+            if (System.getProperty(property) != null) {
+                command.add("-D" + property + "=" + System.getProperty(property));
+            }
+        }
+        command.add(MongoBroker.class.getName());
+        logger.info("Starting mongo broker in {} ...", directory);
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(ProcessBuilder.Redirect.appendTo(new File(directory, MongoBroker.LOG_FILE)));
+        return processBuilder.start();
+    }
+
+    private static void awaitBroker(File directory, Process broker, long timeoutNanos) throws IOException {
+        long startedAt = System.nanoTime();
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        while (readPort(directory) == null) {
+            if (!isAlive(broker)) {
+                throw new IOException("Mongo broker exited with code " + broker.exitValue() + ", see "
+                        + new File(directory, MongoBroker.LOG_FILE));
+            }
+            if (System.nanoTime() - startedAt > timeoutNanos) {
+                broker.destroy();
+                throw new IOException("Mongo broker did not start within " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+            }
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the mongo broker");
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        }
+        logger.info("Mongo broker ready after {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private static boolean isAlive(Process process) {
+        try {
+            process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
+    private static boolean acceptsConnections(int brokerPort) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getByName(null), brokerPort), CONNECT_TIMEOUT_MILLIS);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // the probe is over anyway
+            }
+        }
+    }
+
+    /**
+     * @return the port published by the broker of {@code directory} or {@code null} if there is none
+     */
+    static Integer readPort(File directory) {
+        File portFile = new File(directory, MongoBroker.PORT_FILE);
+        if (!portFile.isFile()) {
+            return null;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(portFile), MongoBroker.CHARSET));
+            try {
+                String line = reader.readLine();
+                return line != null ? Integer.valueOf(line.trim()) : null;
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.process;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.RuntimeConfig;
+import de.flapdoodle.embed.process.config.IRuntimeConfig;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.distribution.Platform;
+import de.flapdoodle.embed.process.runtime.Starter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A drop-in replacement of flapdoodle's {@code MongodStarter} which extracts the mongod binary of a distribution only
+ * once and reuses it across managers, test classes and JVM runs. The binaries are kept per version, platform and bit
+ * size under {@code ~/.embedmongo/extracted}, or the directory given through the {@value #BINARIES_PROPERTY} system
+ * property. {@code cleanup()} of the prepared executables leaves the shared binary in place.
+ */
+public class CachingMongodStarter extends Starter<MongodConfig, MongodExecutable, MongodProcess> {
+
+    public static final String BINARIES_PROPERTY = "mongo.testbed.binaries";
+
+    private static final CachingMongodStarter DEFAULT_INSTANCE = new CachingMongodStarter(new RuntimeConfig());
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    protected CachingMongodStarter(IRuntimeConfig runtimeConfig) {
+        super(runtimeConfig);
+    }
+
+    public static CachingMongodStarter getDefaultInstance() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * @return the directory holding the extracted binaries
+     */
+    public static File binariesDirectory() {
+        String configured = System.getProperty(BINARIES_PROPERTY);
+        return configured != null ? new File(configured)
+                : new File(new File(System.getProperty("user.home"), ".embedmongo"), "extracted");
+    }
+
+    /**
+     * @return where the mongod binary of {@code distribution} is kept, whether it has been extracted or not
+     */
+    public static File binaryFor(Distribution distribution) {
+        String name = distribution.getPlatform() == Platform.Windows ? "mongod.exe" : "mongod";
+        String key = distribution.getVersion().asInDownloadPath() + "-" + distribution.getPlatform() + "-" + distribution.getBitsize();
+        return new File(new File(binariesDirectory(), key), name);
+    }
+
+    @Override
+    protected boolean checkDistribution(Distribution distribution) throws IOException {
+        return binaryFor(distribution).canExecute() || super.checkDistribution(distribution);
+    }
+
+    @Override
+    protected File extractExe(Distribution distribution) throws IOException {
+        File binary = binaryFor(distribution);
+        if (binary.canExecute()) {
+            logger.debug("Reusing extracted mongod {}", binary);
+            return binary;
+        }
+        synchronized (CachingMongodStarter.class) {
+            if (binary.canExecute()) {
+                return binary;
+            }
+            File extracted = super.extractExe(distribution);
+            try {
+                File directory = binary.getParentFile();
+                if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+                    throw new IOException("Unable to create directory " + directory);
+                }
+                // other JVMs may extract concurrently, hence the binary only appears through an atomic rename
+                File partial = File.createTempFile("mongod-", ".partial", directory);
+                Files.copy(extracted.toPath(), partial.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                if (!partial.setExecutable(true)) {
+                    throw new IOException("Unable to make " + partial + " executable");
+                }
+                Files.move(partial.toPath(), binary.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                logger.info("Extracted mongod {} to {}", distribution, binary);
+            } finally {
+                if (!extracted.delete()) {
+                    extracted.deleteOnExit();
+                }
+            }
+            return binary;
+        }
+    }
+
+    @Override
+    protected MongodExecutable newExecutable(MongodConfig config, Distribution distribution, IRuntimeConfig runtime, File exe) {
+        return new MongodExecutable(distribution, config, runtime, exe) {
+            @Override
+            public synchronized void cleanup() {
+                // the binary is shared by all executables of the distribution
+            }
+        };
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.process;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Data directories on RAM-backed storage for throw-away mongods. Durability does not matter for test data, hence the
+ * data files go to {@value #RAM_DIRECTORY} when available and mongod runs without journal and preallocation.
+ */
+public final class FastStorage {
+
+    public static final String RAM_DIRECTORY = "/dev/shm";
+
+    /**
+     * mongod options skipping the journal and the preallocation of data files
+     */
+    public static final String[] MONGOD_OPTIONS = {"--nojournal", "--noprealloc", "--smallfiles"};
+
+    private static final Logger logger = LoggerFactory.getLogger(FastStorage.class);
+
+    private FastStorage() {
+    }
+
+    /**
+     * @return the RAM-backed directory of this machine or {@code null} in case there is none the JVM can write to
+     */
+    public static File ramDirectory() {
+        File ram = new File(RAM_DIRECTORY);
+        return ram.isDirectory() && ram.canWrite() ? ram : null;
+    }
+
+    /**
+     * @return the RAM-backed directory when available, the temporary directory of the JVM otherwise
+     */
+    public static File parentDirectory() {
+        File parent = ramDirectory();
+        if (parent == null) {
+            parent = new File(System.getProperty("java.io.tmpdir"));
+            logger.warn("No RAM-backed storage at {}, keeping mongo data files in {}", RAM_DIRECTORY, parent);
+        }
+        return parent;
+    }
+
+    /**
+     * Creates a fresh data directory, on RAM-backed storage when available and in the temporary directory of the JVM
+     * otherwise. Remove it through {@link #delete(File)} once mongod stopped.
+     *
+     * @throws IllegalStateException in case the directory cannot be created
+     */
+    public static File createDataDirectory() {
+        File parent = parentDirectory();
+        try {
+            File directory = File.createTempFile("mongo-testbed-", "", parent);
+            if (!directory.delete() || !directory.mkdir()) {
+                throw new IOException("Unable to turn " + directory + " into a directory");
+            }
+            logger.debug("Mongo data files kept in {}", directory);
+            return directory;
+        } catch (IOException e) {
+            logger.error("Unable to create a mongo data directory in {} due to an exception!", parent, e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deletes {@code directory} with all its content, logging the files which could not be deleted
+     */
+    public static void delete(File directory) {
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (directory.exists() && !directory.delete()) {
+            logger.warn("Unable to delete {}", directory);
+        }
+    }
+}
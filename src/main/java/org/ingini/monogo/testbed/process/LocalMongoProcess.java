@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.process;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A mongo process (mongod or mongos) started through a system command. {@link #start(long)} only returns once the
+ * process accepts connections: the process output is watched for the {@value #READY_LINE} line and, in case the line
+ * is missed (e.g. because of a different log format), the port is probed with an adaptive backoff.
+ */
+public class LocalMongoProcess {
+
+    public static final String READY_LINE = "waiting for connections";
+    public static final long DEFAULT_STARTUP_TIMEOUT_MILLIS = 30000;
+    public static final String DEFAULT_HOST = "localhost";
+    public static final String WORKING_DIRECTORY = "target";
+
+    private static final long INITIAL_BACKOFF_MILLIS = 10;
+    private static final long MAX_BACKOFF_MILLIS = 500;
+    private static final int PROBE_TIMEOUT_MILLIS = 200;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final List<String> commandLine;
+    private final int port;
+    private final File directory;
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    private Process process;
+    private Thread outputReader;
+    private long startupTimeMillis = -1;
+    private long launchNanos = -1;
+    private long readinessNanos = -1;
+
+    /**
+     * @param commandLine the command and its arguments, which must make the process listen to {@code port}
+     * @param port        the process listens to
+     * @param directory   working directory of the process
+     */
+    public LocalMongoProcess(List<String> commandLine, int port, File directory) {
+        this.commandLine = new ArrayList<String>(commandLine);
+        this.port = port;
+        this.directory = directory;
+    }
+
+    /**
+     * Creates a mongod process listening to {@code port} and keeping its data files in {@code dbpath}
+     */
+    public static LocalMongoProcess mongod(String command, int port, String dbpath, String... options) {
+        List<String> commandLine = new ArrayList<String>(Arrays.asList(command, "--port", String.valueOf(port), "--dbpath", dbpath));
+        commandLine.addAll(Arrays.asList(options));
+        return new LocalMongoProcess(commandLine, port, new File(WORKING_DIRECTORY));
+    }
+
+    /**
+     * Launches the process and waits until it accepts connections
+     *
+     * @param timeoutMillis deadline for the process to become ready
+     * @throws IllegalStateException in case the process exits or is not ready within {@code timeoutMillis}
+     */
+    public void start(long timeoutMillis) throws IOException {
+        long startedAt = System.nanoTime();
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Unable to create working directory " + directory);
+        }
+        ProcessBuilder processBuilder = new ProcessBuilder(commandLine);
+        processBuilder.directory(directory);
+        processBuilder.redirectErrorStream(true);
+        process = processBuilder.start();
+        launchNanos = System.nanoTime() - startedAt;
+
+        outputReader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readOutput();
+            }
+        }, "mongo-testbed-output-" + port);
+        outputReader.setDaemon(true);
+        outputReader.start();
+
+        awaitReadiness(startedAt, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        long startupNanos = System.nanoTime() - startedAt;
+        readinessNanos = startupNanos - launchNanos;
+        startupTimeMillis = TimeUnit.NANOSECONDS.toMillis(startupNanos);
+        logger.info("Mongo process on port {} ready after {} ms", port, startupTimeMillis);
+    }
+
+    private void readOutput() {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String line;
+            while ((line = reader.readLine()) != null && !Thread.interrupted()) {
+                System.out.println("Mongo DB: " + line);
+                if (line.contains(READY_LINE)) {
+                    ready.countDown();
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Stopped reading the output of mongo process on port {}: {}", port, e.getMessage());
+        }
+    }
+
+    private void awaitReadiness(long startedAt, long timeoutNanos) throws IOException {
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        try {
+            while (!ready.await(backoffMillis, TimeUnit.MILLISECONDS)) {
+                if (!isAlive()) {
+                    throw new IllegalStateException("Mongo process " + commandLine + " exited with code " + process.exitValue() + " before accepting connections");
+                }
+                if (acceptsConnections()) {
+                    logger.debug("Mongo process on port {} accepts connections before announcing it", port);
+                    return;
+                }
+                if (System.nanoTime() - startedAt > timeoutNanos) {
+                    stop();
+                    throw new IllegalStateException("Mongo process " + commandLine + " did not accept connections within "
+                            + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+                }
+                backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop();
+            throw new IOException("Interrupted while waiting for mongo process on port " + port);
+        }
+    }
+
+    private boolean acceptsConnections() {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(DEFAULT_HOST, port), PROBE_TIMEOUT_MILLIS);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // the probe is over anyway
+            }
+        }
+    }
+
+    public boolean isAlive() {
+        if (process == null) {
+            return false;
+        }
+        try {
+            process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
+    public void stop() {
+        if (process != null) {
+            logger.debug("Destroying external mongo process on port {} ...", port);
+            process.destroy();
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            process = null;
+        }
+        if (outputReader != null) {
+            outputReader.interrupt();
+            outputReader = null;
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return the time it took the process to accept connections or -1 if it has not been started
+     */
+    public long getStartupTimeMillis() {
+        return startupTimeMillis;
+    }
+
+    /**
+     * @return the time it took to launch the process or -1 if it has not been started
+     */
+    public long getLaunchNanos() {
+        return launchNanos;
+    }
+
+    /**
+     * @return the time the launched process needed to accept connections or -1 if it is not ready
+     */
+    public long getReadinessNanos() {
+        return readinessNanos;
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.process;
+
+import com.mongodb.Mongo;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local daemon owning one or a few embedded mongods and leasing a database of its own to every client, so that all
+ * test JVMs of a build (e.g. the surefire forks) share warm mongods instead of starting one each. Clients connect
+ * through {@link BrokerLease}, which finds the broker through the port file in the broker directory and spawns the
+ * broker when there is none. A lease lasts as long as the client connection: released or abandoned databases are
+ * dropped in the background. The broker exits once it had no client for the idle period.
+ * <p>Protocol, one ASCII line per message: {@code LEASE} is answered by {@code LEASED <mongod port> <database>},
+ * {@code RELEASE <database>} by {@code RELEASED <database>}.</p>
+ * <p>Configured through the {@value #DIRECTORY_PROPERTY}, {@value #INSTANCES_PROPERTY} and {@value #IDLE_PROPERTY}
+ * (in milliseconds) system properties.</p>
+ */
+public class MongoBroker {
+
+    public static final String DIRECTORY_PROPERTY = "mongo.testbed.broker.dir";
+    public static final String INSTANCES_PROPERTY = "mongo.testbed.broker.instances";
+    public static final String IDLE_PROPERTY = "mongo.testbed.broker.idle";
+
+    static final String PORT_FILE = "broker.port";
+    static final String LOCK_FILE = "broker.lock";
+    static final String LOG_FILE = "broker.log";
+    static final String LEASE = "LEASE";
+    static final String LEASED = "LEASED";
+    static final String RELEASE = "RELEASE";
+    static final String RELEASED = "RELEASED";
+    static final String CHARSET = "US-ASCII";
+
+    private static final int DEFAULT_INSTANCES = 1;
+    private static final long DEFAULT_IDLE_MILLIS = 30000;
+    private static final long IDLE_CHECK_MILLIS = 1000;
+    private static final long DROP_TIMEOUT_SECONDS = 10;
+    private static final String DATABASE_PREFIX = "mongo_testbed_broker_";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final File directory;
+    private final int instanceCount;
+    private final long idleMillis;
+    private final List<Instance> instances = new ArrayList<Instance>();
+    private final AtomicInteger databases = new AtomicInteger();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final ExecutorService dropper = Executors.newSingleThreadExecutor(daemonThreads("mongo-testbed-broker-dropper"));
+    private final ScheduledExecutorService idleWatcher = Executors.newSingleThreadScheduledExecutor(daemonThreads("mongo-testbed-broker-idle"));
+
+    private ServerSocket serverSocket;
+    private int connections;
+    private long lastActivity = System.nanoTime();
+    private boolean closed;
+
+    /**
+     * A brokered mongod
+     */
+    private static final class Instance {
+
+        final MongodExecutable executable;
+        final MongodProcess process;
+        final int port;
+        final Mongo mongo;
+        int leases;
+
+        private Instance(MongodExecutable executable, MongodProcess process, int port, Mongo mongo) {
+            this.executable = executable;
+            this.process = process;
+            this.port = port;
+            this.mongo = mongo;
+        }
+    }
+
+    /**
+     * A database leased to a client
+     */
+    private static final class Lease {
+
+        final Instance instance;
+        final String database;
+
+        private Lease(Instance instance, String database) {
+            this.instance = instance;
+            this.database = database;
+        }
+    }
+
+    /**
+     * @param directory     holding the port file, the lock file and the log of the broker
+     * @param instanceCount positive number of mongods to start
+     * @param idleMillis    time without any client after which the broker stops
+     */
+    public MongoBroker(File directory, int instanceCount, long idleMillis) {
+        if (instanceCount < 1) {
+            throw new IllegalArgumentException("Broker instances should be positive but were " + instanceCount);
+        }
+        this.directory = directory;
+        this.instanceCount = instanceCount;
+        this.idleMillis = idleMillis;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final MongoBroker broker = new MongoBroker(directory(), Integer.getInteger(INSTANCES_PROPERTY, DEFAULT_INSTANCES),
+                Long.getLong(IDLE_PROPERTY, DEFAULT_IDLE_MILLIS));
+        Runtime.getRuntime().addShutdownHook(new Thread("mongo-testbed-broker-shutdown") {
+            @Override
+            public void run() {
+                broker.stop();
+            }
+        });
+        broker.start();
+        broker.awaitStop();
+    }
+
+    /**
+     * @return the broker directory given through the {@value #DIRECTORY_PROPERTY} system property, by default a
+     * directory in the temp directory
+     */
+    public static File directory() {
+        String configured = System.getProperty(DIRECTORY_PROPERTY);
+        return configured != null ? new File(configured) : new File(System.getProperty("java.io.tmpdir"), "mongo-testbed-broker");
+    }
+
+    /**
+     * Starts the mongods and accepts clients. The port file is only written once the broker is ready.
+     */
+    public void start() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Unable to create broker directory " + directory);
+        }
+        try {
+            for (int i = 0; i < instanceCount; i++) {
+                instances.add(startInstance());
+            }
+            serverSocket = new ServerSocket(0, 50, InetAddress.getByName(null));
+        } catch (IOException e) {
+            stop();
+            throw e;
+        }
+
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "mongo-testbed-broker-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        idleWatcher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                stopIfIdle();
+            }
+        }, IDLE_CHECK_MILLIS, IDLE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+
+        writePortFile(serverSocket.getLocalPort());
+        logger.info("Mongo broker listening on port {} with {} mongod(s)", serverSocket.getLocalPort(), instances.size());
+    }
+
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Stops accepting clients, drops the pending databases and stops the mongods
+     */
+    public void stop() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        shutdown();
+    }
+
+    /**
+     * Releases everything once {@code closed} has been set, outside of the lock so that clients are not blocked
+     */
+    private void shutdown() {
+        logger.info("Stopping mongo broker ...");
+        if (serverSocket != null) {
+            deletePortFile(serverSocket.getLocalPort());
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                logger.debug("Unable to close the broker socket: {}", e.getMessage());
+            }
+        }
+        idleWatcher.shutdown();
+        dropper.shutdown();
+        try {
+            dropper.awaitTermination(DROP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Instance instance : instances) {
+            logger.debug("Stopping brokered mongod on port {} ...", instance.port);
+            instance.mongo.close();
+            instance.process.stop();
+            instance.executable.cleanup();
+        }
+        stopped.countDown();
+    }
+
+    private Instance startInstance() throws IOException {
+        int port = Network.getFreeServerPort();
+        MongodExecutable executable = CachingMongodStarter.getDefaultInstance()
+                .prepare(new MongodConfig(Version.V2_2_0, port, Network.localhostIsIPv6()));
+        MongodProcess process = executable.start();
+        return new Instance(executable, process, port, new Mongo(LocalMongoProcess.DEFAULT_HOST, port));
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.warn("Unable to accept a broker client: {}", e.getMessage());
+                }
+                continue;
+            }
+            synchronized (this) {
+                if (closed) {
+                    closeQuietly(socket);
+                    return;
+                }
+                connections++;
+                lastActivity = System.nanoTime();
+            }
+            Thread client = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            }, "mongo-testbed-broker-client-" + socket.getPort());
+            client.setDaemon(true);
+            client.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        List<Lease> leases = new ArrayList<Lease>();
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), CHARSET));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), CHARSET);
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.equals(LEASE)) {
+                    Lease lease = lease();
+                    leases.add(lease);
+                    reply(out, LEASED + " " + lease.instance.port + " " + lease.database);
+                } else if (line.startsWith(RELEASE + " ")) {
+                    String database = line.substring(RELEASE.length() + 1);
+                    for (int i = 0; i < leases.size(); i++) {
+                        if (leases.get(i).database.equals(database)) {
+                            release(leases.remove(i));
+                            break;
+                        }
+                    }
+                    reply(out, RELEASED + " " + database);
+                } else {
+                    reply(out, "ERROR unknown command " + line);
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Lost broker client on port {}: {}", socket.getPort(), e.getMessage());
+        } finally {
+            // whatever the client did not release is abandoned
+            for (Lease lease : leases) {
+                release(lease);
+            }
+            closeQuietly(socket);
+            synchronized (this) {
+                connections--;
+                lastActivity = System.nanoTime();
+            }
+        }
+    }
+
+    private synchronized Lease lease() {
+        Instance leastUsed = instances.get(0);
+        for (Instance instance : instances) {
+            if (instance.leases < leastUsed.leases) {
+                leastUsed = instance;
+            }
+        }
+        leastUsed.leases++;
+        Lease lease = new Lease(leastUsed, DATABASE_PREFIX + databases.incrementAndGet());
+        logger.debug("Leased database {} on mongod port {}", lease.database, leastUsed.port);
+        return lease;
+    }
+
+    private void release(final Lease lease) {
+        synchronized (this) {
+            lease.instance.leases--;
+        }
+        dropper.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    lease.instance.mongo.getDB(lease.database).dropDatabase();
+                    logger.debug("Dropped released database {} on mongod port {}", lease.database, lease.instance.port);
+                } catch (RuntimeException e) {
+                    logger.warn("Unable to drop released database {}: {}", lease.database, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void stopIfIdle() {
+        synchronized (this) {
+            if (closed || connections > 0
+                    || TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastActivity) < idleMillis) {
+                return;
+            }
+            // closed along with the idle check, so that no client can be accepted in between
+            closed = true;
+        }
+        logger.info("Mongo broker had no client for {} ms", idleMillis);
+        shutdown();
+    }
+
+    private void writePortFile(int port) throws IOException {
+        File partial = new File(directory, PORT_FILE + "." + port + ".part");
+        OutputStream out = new FileOutputStream(partial);
+        try {
+            out.write((port + "\n").getBytes(CHARSET));
+        } finally {
+            out.close();
+        }
+        // clients never see a half written port file
+        if (!partial.renameTo(new File(directory, PORT_FILE))) {
+            partial.delete();
+            throw new IOException("Unable to publish the broker port file in " + directory);
+        }
+    }
+
+    private void deletePortFile(int port) {
+        Integer published = BrokerLease.readPort(directory);
+        if (published != null && published == port) {
+            new File(directory, PORT_FILE).delete();
+        }
+    }
+
+    private static void reply(Writer out, String line) throws IOException {
+        out.write(line + "\n");
+        out.flush();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing left to do with the client
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
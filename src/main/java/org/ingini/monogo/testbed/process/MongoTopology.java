@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.process;
+
+import com.mongodb.ServerAddress;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A set of local mongo processes forming one deployment, e.g. a replica set or a sharded cluster
+ */
+public interface MongoTopology {
+
+    /**
+     * Starts all processes and waits until the deployment is usable
+     *
+     * @throws IllegalStateException in case the deployment is not usable within {@code timeoutMillis}
+     */
+    void start(long timeoutMillis) throws IOException;
+
+    /**
+     * @return the addresses clients should connect to
+     */
+    List<ServerAddress> getSeeds();
+
+    void stop();
+
+}
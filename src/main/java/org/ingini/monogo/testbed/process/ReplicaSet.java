@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.process;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.CommandResult;
+import com.mongodb.DBObject;
+import com.mongodb.Mongo;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A replica set of local mongod processes. The members are started in parallel, then the set is initiated and
+ * {@link #start(long)} returns once a primary has been elected and every other member is a secondary.
+ */
+public class ReplicaSet implements MongoTopology {
+
+    public static final String DEFAULT_NAME = "testbed";
+
+    private static final int PRIMARY = 1;
+    private static final int SECONDARY = 2;
+    private static final String[] MEMBER_OPTIONS = {"--oplogSize", "16", "--smallfiles", "--noprealloc"};
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final String name;
+    private final List<LocalMongoProcess> members = new ArrayList<LocalMongoProcess>();
+    private final List<File> memberDirectories = new ArrayList<File>();
+    private final File dataDirectory;
+
+    /**
+     * @param command path to the mongod executable
+     * @param dbpath  directory in which a data directory of the replica set is created on construction and deleted on
+     *                {@link #stop()}
+     * @param name    of the replica set
+     * @param members positive number of members
+     */
+    public ReplicaSet(String command, String dbpath, String name, int members) {
+        if (members < 1) {
+            throw new IllegalArgumentException("A replica set needs at least one member but got " + members);
+        }
+        this.name = name;
+        this.dataDirectory = Topologies.createDataDirectory(dbpath, name);
+        for (int i = 0; i < members; i++) {
+            int port = Topologies.freePort();
+            File memberDirectory = new File(dataDirectory, "member-" + i);
+            this.memberDirectories.add(memberDirectory);
+            this.members.add(LocalMongoProcess.mongod(command, port, memberDirectory.getPath(), options("--replSet", name)));
+        }
+    }
+
+    static String[] options(String... options) {
+        String[] all = new String[options.length + MEMBER_OPTIONS.length];
+        System.arraycopy(options, 0, all, 0, options.length);
+        System.arraycopy(MEMBER_OPTIONS, 0, all, options.length, MEMBER_OPTIONS.length);
+        return all;
+    }
+
+    @Override
+    public void start(long timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        // a member starting on the data of a previous run would refuse to be initiated again
+        Topologies.resetDataDirectories(memberDirectories);
+        Topologies.startAll(members, timeoutMillis);
+        try {
+            initiateAndAwaitPrimary(deadline);
+        } catch (RuntimeException e) {
+            stop();
+            throw e;
+        }
+    }
+
+    private void initiateAndAwaitPrimary(long deadline) throws UnknownHostException {
+        BasicDBList memberConfigs = new BasicDBList();
+        for (int i = 0; i < members.size(); i++) {
+            memberConfigs.add(new BasicDBObject("_id", i).append("host", LocalMongoProcess.DEFAULT_HOST + ":" + members.get(i).getPort()));
+        }
+        final Mongo mongo = new Mongo(new ServerAddress(LocalMongoProcess.DEFAULT_HOST, members.get(0).getPort()));
+        try {
+            CommandResult initiated = mongo.getDB("admin").command(new BasicDBObject("replSetInitiate",
+                    new BasicDBObject("_id", name).append("members", memberConfigs)));
+            initiated.throwOnError();
+            logger.debug("Initiated replica set {} with {} members", name, members.size());
+
+            Topologies.await("replica set " + name + " to elect a primary", new Topologies.Condition() {
+                @Override
+                public boolean holds() {
+                    return allMembersReady(mongo);
+                }
+            }, deadline);
+        } finally {
+            mongo.close();
+        }
+    }
+
+    private boolean allMembersReady(Mongo mongo) {
+        try {
+            CommandResult status = mongo.getDB("admin").command("replSetGetStatus");
+            if (!status.ok() || !(status.get("members") instanceof BasicDBList)) {
+                return false;
+            }
+            int primaries = 0;
+            BasicDBList memberStates = (BasicDBList) status.get("members");
+            for (Object member : memberStates) {
+                int state = ((Number) ((DBObject) member).get("state")).intValue();
+                if (state == PRIMARY) {
+                    primaries++;
+                } else if (state != SECONDARY) {
+                    return false;
+                }
+            }
+            return primaries == 1 && memberStates.size() == members.size();
+        } catch (MongoException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<ServerAddress> getSeeds() {
+        List<ServerAddress> seeds = new ArrayList<ServerAddress>();
+        for (LocalMongoProcess member : members) {
+            try {
+                seeds.add(new ServerAddress(LocalMongoProcess.DEFAULT_HOST, member.getPort()));
+            } catch (UnknownHostException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return seeds;
+    }
+
+    /**
+     * @return the seed list as used in a connection string, e.g. {@code localhost:4001,localhost:4002}
+     */
+    public String getHosts() {
+        StringBuilder hosts = new StringBuilder();
+        for (LocalMongoProcess member : members) {
+            hosts.append(hosts.length() == 0 ? "" : ",").append(LocalMongoProcess.DEFAULT_HOST).append(':').append(member.getPort());
+        }
+        return hosts.toString();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void stop() {
+        Topologies.stopAll(members);
+        FastStorage.delete(dataDirectory);
+    }
+}
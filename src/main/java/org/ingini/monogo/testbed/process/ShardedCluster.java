@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.process;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.CommandResult;
+import com.mongodb.DB;
+import com.mongodb.Mongo;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A sharded cluster of local processes: config servers, standalone shard mongods and a single mongos. Config servers
+ * and shards are started in parallel, the mongos once the config servers are up. {@link #start(long)} returns once
+ * every shard has been added and the balancer of the mongos is running.
+ */
+public class ShardedCluster implements MongoTopology {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final List<LocalMongoProcess> configServers = new ArrayList<LocalMongoProcess>();
+    private final List<LocalMongoProcess> shards = new ArrayList<LocalMongoProcess>();
+    private final LocalMongoProcess mongos;
+    private final List<File> mongodDirectories = new ArrayList<File>();
+    private final File dataDirectory;
+
+    /**
+     * @param mongodCommand path to the mongod executable
+     * @param mongosCommand path to the mongos executable
+     * @param dbpath        directory in which a data directory of the cluster is created on construction and deleted
+     *                      on {@link #stop()}
+     * @param shards        positive number of shards
+     * @param configServers number of config servers, either 1 or 3
+     */
+    public ShardedCluster(String mongodCommand, String mongosCommand, String dbpath, int shards, int configServers) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("A sharded cluster needs at least one shard but got " + shards);
+        }
+        if (configServers != 1 && configServers != 3) {
+            throw new IllegalArgumentException("A sharded cluster needs 1 or 3 config servers but got " + configServers);
+        }
+        this.dataDirectory = Topologies.createDataDirectory(dbpath, "sharded-cluster");
+        StringBuilder configDb = new StringBuilder();
+        for (int i = 0; i < configServers; i++) {
+            int port = Topologies.freePort();
+            File path = new File(dataDirectory, "config-" + i);
+            this.mongodDirectories.add(path);
+            this.configServers.add(LocalMongoProcess.mongod(mongodCommand, port, path.getPath(), ReplicaSet.options("--configsvr")));
+            configDb.append(configDb.length() == 0 ? "" : ",").append(LocalMongoProcess.DEFAULT_HOST).append(':').append(port);
+        }
+        for (int i = 0; i < shards; i++) {
+            int port = Topologies.freePort();
+            File path = new File(dataDirectory, "shard-" + i);
+            this.mongodDirectories.add(path);
+            this.shards.add(LocalMongoProcess.mongod(mongodCommand, port, path.getPath(), ReplicaSet.options("--shardsvr")));
+        }
+        int mongosPort = Topologies.freePort();
+        this.mongos = new LocalMongoProcess(Arrays.asList(mongosCommand, "--port", String.valueOf(mongosPort),
+                "--configdb", configDb.toString()), mongosPort, new File(LocalMongoProcess.WORKING_DIRECTORY));
+    }
+
+    @Override
+    public void start(long timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<LocalMongoProcess> mongods = new ArrayList<LocalMongoProcess>(configServers);
+        mongods.addAll(shards);
+        // stale cluster metadata of a previous run would make addShard fail
+        Topologies.resetDataDirectories(mongodDirectories);
+        Topologies.startAll(mongods, timeoutMillis);
+        try {
+            mongos.start(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            addShardsAndAwaitBalancer(deadline);
+        } catch (IOException e) {
+            stop();
+            throw e;
+        } catch (RuntimeException e) {
+            stop();
+            throw e;
+        }
+    }
+
+    private void addShardsAndAwaitBalancer(long deadline) throws UnknownHostException {
+        final Mongo mongo = new Mongo(LocalMongoProcess.DEFAULT_HOST, mongos.getPort());
+        try {
+            DB admin = mongo.getDB("admin");
+            for (LocalMongoProcess shard : shards) {
+                CommandResult added = admin.command(new BasicDBObject("addShard", LocalMongoProcess.DEFAULT_HOST + ":" + shard.getPort()));
+                added.throwOnError();
+            }
+            logger.debug("Added {} shards to the mongos on port {}", shards.size(), mongos.getPort());
+
+            Topologies.await("the balancer of the mongos on port " + mongos.getPort(), new Topologies.Condition() {
+                @Override
+                public boolean holds() {
+                    return balancerRunning(mongo);
+                }
+            }, deadline);
+        } finally {
+            mongo.close();
+        }
+    }
+
+    private boolean balancerRunning(Mongo mongo) {
+        try {
+            CommandResult listed = mongo.getDB("admin").command("listShards");
+            boolean allShardsListed = listed.ok() && ((BasicDBList) listed.get("shards")).size() == shards.size();
+            // every balancer round of a mongos is recorded in config.mongos
+            return allShardsListed && mongo.getDB("config").getCollection("mongos").count() > 0;
+        } catch (MongoException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<ServerAddress> getSeeds() {
+        try {
+            return Collections.singletonList(new ServerAddress(LocalMongoProcess.DEFAULT_HOST, mongos.getPort()));
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        mongos.stop();
+        Topologies.stopAll(shards);
+        Topologies.stopAll(configServers);
+        FastStorage.delete(dataDirectory);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.process;
+
+import de.flapdoodle.embed.process.runtime.Network;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helpers shared by the topologies
+ */
+final class Topologies {
+
+    private static final Logger logger = LoggerFactory.getLogger(Topologies.class);
+
+    private static final long INITIAL_BACKOFF_MILLIS = 10;
+    private static final long MAX_BACKOFF_MILLIS = 500;
+
+    interface Condition {
+        boolean holds();
+    }
+
+    private Topologies() {
+    }
+
+    static int freePort() {
+        try {
+            return Network.getFreeServerPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to find a free port for mongo", e);
+        }
+    }
+
+    /**
+     * @return a new, uniquely named directory in {@code dbpath}, relative paths being resolved against the working
+     * directory of the mongo processes. Delete it through {@link FastStorage#delete(File)} once the processes stopped.
+     */
+    static File createDataDirectory(String dbpath, String prefix) {
+        File parent = new File(dbpath);
+        if (!parent.isAbsolute()) {
+            parent = new File(LocalMongoProcess.WORKING_DIRECTORY, dbpath);
+        }
+        parent = parent.getAbsoluteFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IllegalStateException("Unable to create data directory " + parent);
+        }
+        try {
+            File directory = File.createTempFile(prefix + "-", "", parent);
+            if (!directory.delete() || !directory.mkdir()) {
+                throw new IOException("Unable to turn " + directory + " into a directory");
+            }
+            return directory;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to create a data directory in " + parent, e);
+        }
+    }
+
+    /**
+     * Empties the data directories of the processes, so that no start ever sees the data of a previous one
+     */
+    static void resetDataDirectories(List<File> directories) {
+        for (File directory : directories) {
+            FastStorage.delete(directory);
+            if (!directory.mkdirs()) {
+                throw new IllegalStateException("Unable to create data directory " + directory);
+            }
+        }
+    }
+
+    /**
+     * Starts all {@code processes} concurrently and waits for each of them to accept connections. In case any of them
+     * fails, all are stopped.
+     */
+    static void startAll(List<LocalMongoProcess> processes, final long timeoutMillis) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(processes.size());
+        try {
+            List<Future<Void>> starts = new ArrayList<Future<Void>>();
+            for (final LocalMongoProcess process : processes) {
+                starts.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        process.start(timeoutMillis);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> start : starts) {
+                start.get();
+            }
+        } catch (ExecutionException e) {
+            stopAll(processes);
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to start mongo processes", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopAll(processes);
+            throw new IOException("Interrupted while starting mongo processes");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static void stopAll(List<LocalMongoProcess> processes) {
+        for (LocalMongoProcess process : processes) {
+            process.stop();
+        }
+    }
+
+    /**
+     * Polls {@code condition} with an adaptive backoff until it holds
+     *
+     * @throws IllegalStateException in case it does not hold before {@code deadlineNanos}
+     */
+    static void await(String description, Condition condition, long deadlineNanos) {
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        while (!condition.holds()) {
+            if (System.nanoTime() > deadlineNanos) {
+                throw new IllegalStateException("Timed out waiting for " + description);
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + description);
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        }
+        logger.debug("Done waiting for {}", description);
+    }
+}
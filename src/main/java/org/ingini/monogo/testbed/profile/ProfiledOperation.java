@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.profile;
+
+import com.mongodb.DBObject;
+
+/**
+ * A single entry of the mongod profiler, completed with the plan the query optimizer picked for it
+ */
+public class ProfiledOperation {
+
+    public static final long UNKNOWN = -1;
+
+    /**
+     * Plan of a full collection scan, as reported by explain up to mongo 2.4
+     */
+    public static final String BASIC_CURSOR = "BasicCursor";
+
+    /**
+     * Plan of a full collection scan, as reported by the profiler from mongo 2.6 on
+     */
+    public static final String COLLSCAN = "COLLSCAN";
+
+    private final DBObject entry;
+    private final String plan;
+
+    /**
+     * @param entry of the {@code system.profile} collection
+     * @param plan  the cursor or plan summary of the operation, {@code null} if not known
+     */
+    public ProfiledOperation(DBObject entry, String plan) {
+        this.entry = entry;
+        this.plan = plan;
+    }
+
+    /**
+     * @return the kind of operation, e.g. {@code query}, {@code update} or {@code remove}
+     */
+    public String getOp() {
+        return String.valueOf(entry.get("op"));
+    }
+
+    /**
+     * @return the full name of the collection, i.e. {@code database.collection}
+     */
+    public String getNamespace() {
+        return String.valueOf(entry.get("ns"));
+    }
+
+    public String getCollection() {
+        String namespace = getNamespace();
+        return namespace.substring(namespace.indexOf('.') + 1);
+    }
+
+    /**
+     * @return the query or selector of the operation, {@code null} for operations without one
+     */
+    public DBObject getQuery() {
+        DBObject modifiers = modifiers();
+        if (modifiers != null) {
+            return (DBObject) modifiers.get(modifiers.keySet().iterator().next());
+        }
+        Object query = entry.get("query");
+        return query instanceof DBObject ? (DBObject) query : null;
+    }
+
+    /**
+     * @return the sort order of the query, {@code null} if it is not sorted
+     */
+    public DBObject getOrderBy() {
+        DBObject modifiers = modifiers();
+        if (modifiers == null) {
+            return null;
+        }
+        Object orderBy = modifiers.containsField("$orderby") ? modifiers.get("$orderby") : modifiers.get("orderby");
+        return orderBy instanceof DBObject ? (DBObject) orderBy : null;
+    }
+
+    /**
+     * @return the index hinted by the query, either its key pattern or its name, {@code null} if there is no hint
+     */
+    public Object getHint() {
+        DBObject modifiers = modifiers();
+        return modifiers == null ? null : modifiers.get("$hint");
+    }
+
+    public long getNscanned() {
+        return longField("nscanned");
+    }
+
+    public long getNreturned() {
+        return longField("nreturned");
+    }
+
+    public long getMillis() {
+        return longField("millis");
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    public boolean isFullScan() {
+        return plan != null && (plan.startsWith(BASIC_CURSOR) || plan.startsWith(COLLSCAN));
+    }
+
+    /**
+     * @return documents scanned per returned document, the number of scanned documents if none was returned
+     */
+    public double getScanRatio() {
+        long nscanned = Math.max(0, getNscanned());
+        return nscanned / (double) Math.max(1, getNreturned());
+    }
+
+    /**
+     * @return the raw profiler entry
+     */
+    public DBObject getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return the query in case it wraps the selector along with modifiers such as {@code $orderby}, i.e. its first
+     * field is {@code $query} or {@code query} as mongod expects
+     */
+    private DBObject modifiers() {
+        Object query = entry.get("query");
+        if (!(query instanceof DBObject) || ((DBObject) query).keySet().isEmpty()) {
+            return null;
+        }
+        DBObject modifiers = (DBObject) query;
+        String first = modifiers.keySet().iterator().next();
+        boolean wrapped = "$query".equals(first) || "query".equals(first);
+        return wrapped && modifiers.get(first) instanceof DBObject ? modifiers : null;
+    }
+
+    private long longField(String name) {
+        Object value = entry.get(name);
+        return value instanceof Number ? ((Number) value).longValue() : UNKNOWN;
+    }
+
+    @Override
+    public String toString() {
+        return getOp() + " " + getNamespace() + " " + getQuery() + " plan=" + plan + " nscanned=" + getNscanned()
+                + " nreturned=" + getNreturned() + " millis=" + getMillis();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.profile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The operations profiled during a test, with assertions on their plans and costs. A failed assertion lists the
+ * offending operations.
+ */
+public class QueryProfile {
+
+    private final List<ProfiledOperation> operations;
+
+    public QueryProfile(List<ProfiledOperation> operations) {
+        this.operations = Collections.unmodifiableList(new ArrayList<ProfiledOperation>(operations));
+    }
+
+    public List<ProfiledOperation> getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return the operations on {@code collection} only
+     */
+    public QueryProfile on(String collection) {
+        List<ProfiledOperation> selected = new ArrayList<ProfiledOperation>();
+        for (ProfiledOperation operation : operations) {
+            if (operation.getCollection().equals(collection)) {
+                selected.add(operation);
+            }
+        }
+        return new QueryProfile(selected);
+    }
+
+    /**
+     * @throws AssertionError listing the operations which scanned the whole collection
+     */
+    public QueryProfile assertNoFullScans() {
+        List<ProfiledOperation> offending = new ArrayList<ProfiledOperation>();
+        for (ProfiledOperation operation : operations) {
+            if (operation.isFullScan()) {
+                offending.add(operation);
+            }
+        }
+        return check(offending, "did a full collection scan");
+    }
+
+    /**
+     * @throws AssertionError listing the operations which scanned {@code maxRatio} or more documents per returned one
+     */
+    public QueryProfile assertScanRatioBelow(double maxRatio) {
+        List<ProfiledOperation> offending = new ArrayList<ProfiledOperation>();
+        for (ProfiledOperation operation : operations) {
+            if (operation.getNscanned() != ProfiledOperation.UNKNOWN && operation.getScanRatio() >= maxRatio) {
+                offending.add(operation);
+            }
+        }
+        return check(offending, "scanned " + maxRatio + " or more documents per returned document");
+    }
+
+    /**
+     * @throws AssertionError listing the operations which took {@code maxMillis} or longer
+     */
+    public QueryProfile assertSlowestBelow(long maxMillis) {
+        List<ProfiledOperation> offending = new ArrayList<ProfiledOperation>();
+        for (ProfiledOperation operation : operations) {
+            if (operation.getMillis() >= maxMillis) {
+                offending.add(operation);
+            }
+        }
+        return check(offending, "took " + maxMillis + " ms or longer");
+    }
+
+    private QueryProfile check(List<ProfiledOperation> offending, String problem) {
+        if (offending.isEmpty()) {
+            return this;
+        }
+        StringBuilder message = new StringBuilder()
+                .append(offending.size()).append(" of ").append(operations.size()).append(" operation(s) ").append(problem).append(':');
+        for (ProfiledOperation operation : offending) {
+            message.append("\n    ").append(operation);
+        }
+        throw new AssertionError(message.toString());
+    }
+}
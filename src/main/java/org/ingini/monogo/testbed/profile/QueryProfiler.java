@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.monogo.testbed.profile;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns the mongod profiler on for a database during each test. Use it as method-level {@code @Rule} and call
+ * {@link #profile()} from the test to collect the operations profiled so far, with the plan of every query, update and
+ * remove. Up to mongo 2.4 the profiler does not record plans, so the plan is taken from an explain of the same query
+ * with the same sort order and hint.
+ * <p>Example:</p>
+ * <p>@Rule public QueryProfiler profiler = mongoManager.profiler();</p>
+ * <p>profiler.profile().on("test_collection").assertNoFullScans();</p>
+ */
+public class QueryProfiler implements TestRule {
+
+    public static final String PROFILE_COLLECTION = "system.profile";
+
+    private static final int OFF = 0;
+    private static final int ALL_OPERATIONS = 2;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final DB mongoDB;
+
+    public QueryProfiler(DB mongoDB) {
+        this.mongoDB = mongoDB;
+    }
+
+    @Override
+    public Statement apply(final Statement base, Description description) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                start();
+                try {
+                    base.evaluate();
+                } finally {
+                    stop();
+                }
+            }
+        };
+    }
+
+    /**
+     * Discards earlier profiler entries and profiles every operation on the database from now on
+     */
+    public void start() {
+        setLevel(OFF);
+        // the profile collection can only be dropped while the profiler is off
+        mongoDB.getCollection(PROFILE_COLLECTION).drop();
+        setLevel(ALL_OPERATIONS);
+        logger.debug("Profiling all operations on mongo database {}", mongoDB.getName());
+    }
+
+    public void stop() {
+        setLevel(OFF);
+    }
+
+    /**
+     * @return the operations profiled since {@link #start()}, in execution order, without commands and the operations
+     * of the profiler itself
+     */
+    public QueryProfile profile() {
+        List<DBObject> entries = mongoDB.getCollection(PROFILE_COLLECTION).find()
+                .sort(new BasicDBObject("$natural", 1)).toArray();
+        List<ProfiledOperation> operations = new ArrayList<ProfiledOperation>();
+        for (DBObject entry : entries) {
+            if (isOwnOrCommand(entry)) {
+                continue;
+            }
+            ProfiledOperation operation = new ProfiledOperation(entry, null);
+            operations.add(new ProfiledOperation(entry, plan(operation)));
+        }
+        return new QueryProfile(operations);
+    }
+
+    private boolean isOwnOrCommand(DBObject entry) {
+        String namespace = String.valueOf(entry.get("ns"));
+        Object query = entry.get("query");
+        return namespace.endsWith(".$cmd") || namespace.contains(".system.")
+                || "command".equals(entry.get("op"))
+                || query instanceof DBObject && ((DBObject) query).containsField("$explain");
+    }
+
+    private String plan(ProfiledOperation operation) {
+        Object summary = operation.getEntry().get("planSummary");
+        if (summary != null) {
+            return summary.toString();
+        }
+        String op = operation.getOp();
+        if (!"query".equals(op) && !"update".equals(op) && !"remove".equals(op)) {
+            return null;
+        }
+        DBObject query = operation.getQuery();
+        try {
+            DBCursor cursor = mongoDB.getCollection(operation.getCollection()).find(query == null ? new BasicDBObject() : query);
+            if (operation.getOrderBy() != null) {
+                cursor.sort(operation.getOrderBy());
+            }
+            if (operation.getHint() instanceof DBObject) {
+                cursor.hint((DBObject) operation.getHint());
+            } else if (operation.getHint() != null) {
+                cursor.hint(operation.getHint().toString());
+            }
+            return String.valueOf(cursor.explain().get("cursor"));
+        } catch (MongoException e) {
+            logger.debug("Unable to explain {}: {}", operation, e.getMessage());
+            return null;
+        }
+    }
+
+    private void setLevel(int level) {
+        mongoDB.command(new BasicDBObject("profile", level)).throwOnError();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.process.BrokerLease;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests leasing databases from a broker found through its port file
+ */
+public class TestBrokerLease {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldLeaseAndReleaseThroughTheRunningBroker() throws Exception {
+        //GIVEN
+        final ServerSocket broker = new ServerSocket(0, 1, InetAddress.getByName(null));
+        final BlockingQueue<String> received = new ArrayBlockingQueue<String>(2);
+        Thread fakeBroker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Socket client = broker.accept();
+                    BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), "US-ASCII"));
+                    Writer out = new OutputStreamWriter(client.getOutputStream(), "US-ASCII");
+                    received.add(in.readLine());
+                    out.write("LEASED 27017 mongo_testbed_broker_1\n");
+                    out.flush();
+                    received.add(in.readLine());
+                    out.write("RELEASED mongo_testbed_broker_1\n");
+                    out.flush();
+                    client.close();
+                } catch (Exception e) {
+                    received.add(e.toString());
+                }
+            }
+        });
+        fakeBroker.start();
+        File directory = temporaryFolder.getRoot();
+        FileWriter portFile = new FileWriter(new File(directory, "broker.port"));
+        portFile.write(broker.getLocalPort() + "\n");
+        portFile.close();
+
+        //WHEN
+        BrokerLease lease = BrokerLease.lease(directory, 1000);
+        lease.release();
+
+        //THEN
+        Assertions.assertThat(lease.getPort()).isEqualTo(27017);
+        Assertions.assertThat(lease.getDatabaseName()).isEqualTo("mongo_testbed_broker_1");
+        Assertions.assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("LEASE");
+        Assertions.assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("RELEASE mongo_testbed_broker_1");
+        fakeBroker.join();
+        broker.close();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.WriteConcern;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.fixture.BulkLoadOptions;
+import org.junit.Test;
+
+/**
+ * Tests the validation of the bulk-load options
+ */
+public class TestBulkLoadOptions {
+
+    @Test
+    public void shouldResolveAWriteConcernByName() {
+        //WHEN
+        WriteConcern writeConcern = BulkLoadOptions.writeConcern("NONE");
+
+        //THEN
+        Assertions.assertThat(writeConcern).isEqualTo(WriteConcern.NONE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectAnUnknownWriteConcern() {
+        //WHEN
+        BulkLoadOptions.writeConcern("EVENTUALLY");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectZeroInsertConnections() {
+        //WHEN
+        new BulkLoadOptions(1000, null, true, 0);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.distribution.BitSize;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.distribution.Platform;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.process.CachingMongodStarter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Tests the reuse of extracted mongod binaries
+ */
+public class TestCachingMongodStarter {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        System.setProperty(CachingMongodStarter.BINARIES_PROPERTY, temporaryFolder.getRoot().getPath());
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(CachingMongodStarter.BINARIES_PROPERTY);
+    }
+
+    @Test
+    public void shouldKeepBinariesPerVersionAndPlatform() {
+        //GIVEN
+        Distribution distribution = new Distribution(Version.V2_2_0, Platform.Linux, BitSize.B64);
+
+        //WHEN
+        File binary = CachingMongodStarter.binaryFor(distribution);
+
+        //THEN
+        Assertions.assertThat(binary).isEqualTo(new File(new File(temporaryFolder.getRoot(), "2.2.0-Linux-B64"), "mongod"));
+    }
+
+    @Test
+    public void shouldReuseAnExtractedBinaryAndKeepItOnCleanup() throws IOException {
+        //GIVEN
+        File binary = CachingMongodStarter.binaryFor(Distribution.detectFor(Version.V2_2_0));
+        Assertions.assertThat(binary.getParentFile().mkdirs()).isTrue();
+        Assertions.assertThat(binary.createNewFile() && binary.setExecutable(true)).isTrue();
+
+        //WHEN
+        MongodExecutable executable = CachingMongodStarter.getDefaultInstance().prepare(new MongodConfig(Version.V2_2_0, 27017, false));
+        executable.cleanup();
+
+        //THEN
+        Assertions.assertThat(executable.getFile()).isEqualTo(binary);
+        Assertions.assertThat(binary.exists()).isTrue();
+    }
+}
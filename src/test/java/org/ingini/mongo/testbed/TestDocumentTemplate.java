@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.fixture.DocumentTemplate;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests the generation of documents from a fixture template
+ */
+public class TestDocumentTemplate {
+
+    private static final String TEMPLATE = "test_collection_template.json";
+
+    @Test
+    public void shouldGenerateTheSameDocumentForTheSameSeedAndIndex() {
+        //GIVEN
+        DocumentTemplate template = DocumentTemplate.load(TEMPLATE, 42);
+        DocumentTemplate sameTemplate = DocumentTemplate.load(TEMPLATE, 42);
+
+        //WHEN
+        DBObject later = template.generate(7);
+        DBObject earlier = template.generate(3);
+
+        //THEN
+        Assertions.assertThat(sameTemplate.generate(7)).isEqualTo(later);
+        Assertions.assertThat(sameTemplate.generate(3)).isEqualTo(earlier);
+        Assertions.assertThat(earlier.get("sequence")).isEqualTo(1030L);
+        Assertions.assertThat(earlier.get("first_level_string")).isEqualTo("First level string");
+    }
+
+    @Test
+    public void shouldKeepGeneratedValuesWithinTheirBounds() {
+        //GIVEN
+        DocumentTemplate template = DocumentTemplate.load(TEMPLATE, 1);
+        Set<Object> ids = new HashSet<Object>();
+        long from = 1325376000000L; // 2012-01-01T00:00:00Z
+        long to = 1356998400000L; // 2013-01-01T00:00:00Z
+
+        for (long index = 0; index < 1000; index++) {
+            //WHEN
+            DBObject document = template.generate(index);
+
+            //THEN
+            ids.add(document.get("_id"));
+            DBObject secondLevel = (DBObject) document.get("second_level");
+            Assertions.assertThat((Long) secondLevel.get("second_level_int")).isGreaterThanOrEqualTo(1).isLessThanOrEqualTo(6);
+            Assertions.assertThat(secondLevel.get("second_level_string")).isIn("first", "second", "third");
+            Assertions.assertThat(((Date) document.get("created")).getTime()).isGreaterThanOrEqualTo(from).isLessThan(to);
+        }
+        Assertions.assertThat(ids).hasSize(1000);
+    }
+
+    @Test
+    public void shouldGenerateWithinRangesWiderThanALong() {
+        //GIVEN
+        DocumentTemplate template = new DocumentTemplate(new BasicDBObject("full", range(Long.MIN_VALUE, Long.MAX_VALUE))
+                .append("wide", range(-1, Long.MAX_VALUE)), 42);
+        Set<Object> values = new HashSet<Object>();
+
+        for (long index = 0; index < 1000; index++) {
+            //WHEN
+            DBObject document = template.generate(index);
+
+            //THEN
+            values.add(document.get("full"));
+            Assertions.assertThat((Long) document.get("wide")).isGreaterThanOrEqualTo(-1);
+        }
+        Assertions.assertThat(values).hasSize(1000);
+    }
+
+    private static DBObject range(long min, long max) {
+        return new BasicDBObject(DocumentTemplate.GENERATOR_KEY, "range").append("min", min).append("max", max);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.process.FastStorage;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Tests the lifecycle of fast storage data directories
+ */
+public class TestFastStorage {
+
+    @Test
+    public void shouldCreateDataDirectoriesOnRamWhenAvailable() {
+        //GIVEN
+        File ram = FastStorage.ramDirectory();
+
+        //WHEN
+        File directory = FastStorage.createDataDirectory();
+
+        //THEN
+        try {
+            Assertions.assertThat(directory.isDirectory()).isTrue();
+            if (ram != null) {
+                Assertions.assertThat(directory.getParentFile()).isEqualTo(ram);
+            }
+        } finally {
+            FastStorage.delete(directory);
+        }
+    }
+
+    @Test
+    public void shouldDeleteDataDirectoriesWithTheirContent() throws IOException {
+        //GIVEN
+        File directory = FastStorage.createDataDirectory();
+        File journal = new File(directory, "journal");
+        Assertions.assertThat(journal.mkdir()).isTrue();
+        Assertions.assertThat(new File(journal, "j._0").createNewFile()).isTrue();
+        Assertions.assertThat(new File(directory, "mongod.lock").createNewFile()).isTrue();
+
+        //WHEN
+        FastStorage.delete(directory);
+
+        //THEN
+        Assertions.assertThat(directory.exists()).isFalse();
+    }
+}
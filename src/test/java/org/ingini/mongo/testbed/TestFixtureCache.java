@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.fixture.FixtureCache;
+import org.ingini.monogo.testbed.fixture.FixtureDigest;
+import org.junit.Test;
+
+/**
+ * Tests telling the templates of a collection apart from those of other collections
+ */
+public class TestFixtureCache {
+
+    @Test
+    public void shouldRecognizeTheTemplatesOfACollection() {
+        //GIVEN
+        String digest = FixtureDigest.of("test_collection.json");
+
+        //WHEN
+        boolean template = FixtureCache.isTemplateOf(FixtureCache.TEMPLATE_PREFIX + "users." + digest, "users");
+
+        //THEN
+        Assertions.assertThat(template).isTrue();
+    }
+
+    @Test
+    public void shouldNotMistakeTheTemplatesOfACollectionExtendingTheName() {
+        //GIVEN
+        String digest = FixtureDigest.of("test_collection.json");
+
+        //WHEN
+        boolean template = FixtureCache.isTemplateOf(FixtureCache.TEMPLATE_PREFIX + "users.archive." + digest, "users");
+
+        //THEN
+        Assertions.assertThat(template).isFalse();
+        Assertions.assertThat(FixtureCache.isTemplateOf(FixtureCache.TEMPLATE_PREFIX + "users." + digest + ".x", "users")).isFalse();
+    }
+}
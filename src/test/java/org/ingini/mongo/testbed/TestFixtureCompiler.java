@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import org.bson.BSONObject;
+import org.bson.BasicBSONDecoder;
+import org.bson.types.ObjectId;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.fixture.FixtureCompiler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the compilation of JSON fixtures into binary BSON files
+ */
+public class TestFixtureCompiler {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldCompileAllDocumentsWithObjectIds() throws IOException {
+        //GIVEN
+        FixtureCompiler compiler = new FixtureCompiler(temporaryFolder.getRoot());
+
+        //WHEN
+        File compiled = compiler.compile("test_collection.json");
+
+        //THEN
+        List<BSONObject> documents = decode(compiled);
+        Assertions.assertThat(documents).hasSize(4);
+        Assertions.assertThat(documents.get(1).get("_id")).isEqualTo(new ObjectId("5ffc377727145d8bc3e3b1a5"));
+        Assertions.assertThat(((BSONObject) documents.get(2).get("second_level")).get("second_level_int")).isEqualTo(333);
+    }
+
+    @Test
+    public void shouldReuseAnUpToDateCompiledFixture() {
+        //GIVEN
+        FixtureCompiler compiler = new FixtureCompiler(temporaryFolder.getRoot());
+        File compiled = compiler.compile("test_collection.json");
+        long lastModified = compiled.lastModified();
+
+        //WHEN
+        File recompiled = compiler.compile("test_collection.json");
+
+        //THEN
+        Assertions.assertThat(recompiled).isEqualTo(compiled);
+        Assertions.assertThat(recompiled.lastModified()).isEqualTo(lastModified);
+        Assertions.assertThat(temporaryFolder.getRoot().list()).hasSize(1);
+    }
+
+    private static List<BSONObject> decode(File compiled) throws IOException {
+        List<BSONObject> documents = new ArrayList<BSONObject>();
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(compiled));
+        try {
+            BasicBSONDecoder decoder = new BasicBSONDecoder();
+            while (inputStream.available() > 0) {
+                documents.add(decoder.readObject(inputStream));
+            }
+        } finally {
+            inputStream.close();
+        }
+        return documents;
+    }
+}
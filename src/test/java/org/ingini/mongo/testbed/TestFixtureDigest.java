@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.fixture.FixtureDigest;
+import org.junit.Test;
+
+/**
+ * Tests the content hash used to tag fixture templates
+ */
+public class TestFixtureDigest {
+
+    @Test
+    public void shouldComputeAStableShortHexDigest() {
+        //GIVEN
+        String location = "test_collection.json";
+
+        //WHEN
+        String digest = FixtureDigest.of(location);
+
+        //THEN
+        Assertions.assertThat(digest).hasSize(16).matches("[0-9a-f]+");
+        Assertions.assertThat(FixtureDigest.of(location)).isEqualTo(digest);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectAMissingFixture() {
+        //WHEN
+        FixtureDigest.of("missing_collection.json");
+    }
+}
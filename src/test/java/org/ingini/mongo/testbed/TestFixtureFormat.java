@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBEncoder;
+import org.bson.types.ObjectId;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.fixture.FixtureFormat;
+import org.ingini.monogo.testbed.fixture.TimedDocumentReader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests the detection and reading of the supported fixture formats
+ */
+public class TestFixtureFormat {
+
+    private static final String NDJSON =
+            "{\"_id\": {\"$oid\": \"4aac186d27235d8cf3b4b2c4\"}, \"created\": {\"$date\": \"2012-10-01T10:00:00.000+0200\"}}\n"
+                    + "\n"
+                    + "{\"_id\": {\"$oid\": \"5ffc377727145d8bc3e3b1a5\"}, \"views\": {\"$numberLong\": \"12345678901\"}}";
+
+    @Test
+    public void shouldReadGzippedExtendedJsonLines() throws IOException {
+        //GIVEN
+        byte[] fixture = gzip(NDJSON.getBytes("UTF-8"));
+
+        //WHEN
+        TimedDocumentReader reader = FixtureFormat.open("export.json.gz", new ByteArrayInputStream(fixture));
+        DBObject first = reader.next();
+        DBObject second = reader.next();
+
+        //THEN
+        Assertions.assertThat(first.get("_id")).isEqualTo(new ObjectId("4aac186d27235d8cf3b4b2c4"));
+        Assertions.assertThat(first.get("created")).isEqualTo(new Date(1349078400000L));
+        Assertions.assertThat(second.get("views")).isEqualTo(12345678901L);
+        Assertions.assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    public void shouldKeepStringIdsOfExtendedJsonLines() throws IOException {
+        //GIVEN
+        byte[] fixture = "{\"_id\": \"user-1\"}\n{\"_id\": \"4aac186d27235d8cf3b4b2c4\"}".getBytes("UTF-8");
+
+        //WHEN
+        TimedDocumentReader reader = FixtureFormat.open("users.json", new ByteArrayInputStream(fixture));
+        DBObject first = reader.next();
+        DBObject second = reader.next();
+
+        //THEN
+        Assertions.assertThat(first.get("_id")).isEqualTo("user-1");
+        Assertions.assertThat(second.get("_id")).isEqualTo("4aac186d27235d8cf3b4b2c4");
+        Assertions.assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    public void shouldReadBsonDumps() throws IOException {
+        //GIVEN
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        DefaultDBEncoder encoder = new DefaultDBEncoder();
+        for (int i = 0; i < 1000; i++) {
+            dump.write(encoder.encode(new BasicDBObject("_id", i).append("padding", new byte[100])));
+        }
+
+        //WHEN
+        TimedDocumentReader reader = FixtureFormat.open("dump/test_collection.bson", new ByteArrayInputStream(dump.toByteArray()));
+        int documents = 0;
+        for (DBObject document = reader.next(); document != null; document = reader.next()) {
+            Assertions.assertThat(document.get("_id")).isEqualTo(documents++);
+        }
+
+        //THEN
+        Assertions.assertThat(documents).isEqualTo(1000);
+    }
+
+    @Test
+    public void shouldDetectBsonDumpsStartingWithJsonOrWhitespaceBytes() throws IOException {
+        // the first byte of a document length of 91, 123, 9, 10, 13 or 32 (mod 256) reads as '[', '{' or whitespace
+        for (int documentLength : new int[]{91, 123, 256 + 9, 256 + 10, 256 + 13, 256 + 32}) {
+            //GIVEN
+            ByteArrayOutputStream dump = new ByteArrayOutputStream();
+            DefaultDBEncoder encoder = new DefaultDBEncoder();
+            for (int i = 0; i < 3; i++) {
+                byte[] document = encoder.encode(new BasicDBObject("_id", i).append("padding", new byte[documentLength - 28]));
+                Assertions.assertThat(document.length).isEqualTo(documentLength);
+                dump.write(document);
+            }
+
+            //WHEN
+            TimedDocumentReader reader = FixtureFormat.open("dump/test_collection", new ByteArrayInputStream(dump.toByteArray()));
+            int documents = 0;
+            for (DBObject document = reader.next(); document != null; document = reader.next()) {
+                Assertions.assertThat(document.get("_id")).isEqualTo(documents++);
+            }
+
+            //THEN
+            Assertions.assertThat(documents).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void shouldDetectJsonArraysByContent() throws IOException {
+        //GIVEN
+        byte[] fixture = "  [{\"name\": \"Ivan\"}]".getBytes("UTF-8");
+
+        //WHEN
+        TimedDocumentReader reader = FixtureFormat.open("fixture.json", new ByteArrayInputStream(fixture));
+
+        //THEN
+        Assertions.assertThat(reader.next().get("name")).isEqualTo("Ivan");
+        Assertions.assertThat(reader.next()).isNull();
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(bytes);
+        gzip.close();
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.fixture.DocumentReader;
+import org.ingini.monogo.testbed.fixture.JsonArrayDocumentReader;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the streaming JSON array tokenizer
+ */
+public class TestJsonArrayDocumentReader {
+
+    @Test
+    public void shouldReadAllDocumentsOfTheFixtureOneByOne() throws IOException {
+        //GIVEN
+        DocumentReader reader = new JsonArrayDocumentReader(new InputStreamReader(
+                TestJsonArrayDocumentReader.class.getClassLoader().getResourceAsStream("test_collection.json"), "UTF-8"));
+
+        //WHEN
+        List<DBObject> documents = readAll(reader);
+
+        //THEN
+        Assertions.assertThat(documents).hasSize(4);
+        Assertions.assertThat(documents.get(0).get("_id")).isEqualTo(new ObjectId("4aac186d27235d8cf3b4b2c4"));
+        Assertions.assertThat(((DBObject) documents.get(3).get("second_level")).get("second_level_int")).isEqualTo(761);
+    }
+
+    @Test
+    public void shouldNotBeConfusedByBracketsAndQuotesInsideStrings() throws IOException {
+        //GIVEN
+        DocumentReader reader = new JsonArrayDocumentReader(new StringReader(
+                "[ {\"text\": \"} ] , \\\" {\"}, {\"nested\": {\"array\": [1, [2]]}} ]"));
+
+        //WHEN
+        List<DBObject> documents = readAll(reader);
+
+        //THEN
+        Assertions.assertThat(documents).hasSize(2);
+        Assertions.assertThat(documents.get(0).get("text")).isEqualTo("} ] , \" {");
+    }
+
+    @Test
+    public void shouldReadNothingFromAnEmptyArray() throws IOException {
+        //GIVEN
+        DocumentReader reader = new JsonArrayDocumentReader(new StringReader(" [ ] "));
+
+        //WHEN
+        List<DBObject> documents = readAll(reader);
+
+        //THEN
+        Assertions.assertThat(documents).isEmpty();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectATruncatedFixture() throws IOException {
+        //GIVEN
+        DocumentReader reader = new JsonArrayDocumentReader(new StringReader("[ {\"a\": 1}, {\"b\": "));
+
+        //WHEN
+        readAll(reader);
+    }
+
+    private static List<DBObject> readAll(DocumentReader reader) throws IOException {
+        List<DBObject> documents = new ArrayList<DBObject>();
+        for (DBObject document = reader.next(); document != null; document = reader.next()) {
+            documents.add(document);
+        }
+        reader.close();
+        return documents;
+    }
+}
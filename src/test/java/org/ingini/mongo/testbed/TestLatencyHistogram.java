@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import org.fest.assertions.Assertions;
+import org.fest.assertions.Delta;
+import org.ingini.monogo.testbed.load.LatencyHistogram;
+import org.junit.Test;
+
+/**
+ * Tests the percentiles of the latency histogram
+ */
+public class TestLatencyHistogram {
+
+    @Test
+    public void shouldReportPercentilesWithinThePrecision() {
+        //GIVEN
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //WHEN
+        for (long micros = 1; micros <= 10000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        //THEN
+        Assertions.assertThat(histogram.getCount()).isEqualTo(10000);
+        Assertions.assertThat((double) histogram.getValueAtPercentile(50)).isEqualTo(5000000, Delta.delta(5000000 * 0.002));
+        Assertions.assertThat((double) histogram.getValueAtPercentile(99)).isEqualTo(9900000, Delta.delta(9900000 * 0.002));
+        Assertions.assertThat(histogram.getValueAtPercentile(100)).isEqualTo(10000000);
+        Assertions.assertThat(histogram.getMeanNanos()).isEqualTo(5000500, Delta.delta(0.001));
+    }
+
+    @Test
+    public void shouldKeepSmallValuesExact() {
+        //GIVEN
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //WHEN
+        histogram.record(3);
+        histogram.record(700);
+
+        //THEN
+        Assertions.assertThat(histogram.getValueAtPercentile(50)).isEqualTo(3);
+        Assertions.assertThat(histogram.getValueAtPercentile(100)).isEqualTo(700);
+    }
+}
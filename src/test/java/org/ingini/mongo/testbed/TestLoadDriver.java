@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.load.LoadDriver;
+import org.ingini.monogo.testbed.load.LoadOperation;
+import org.ingini.monogo.testbed.load.LoadReport;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests running operation mixes through the load driver
+ */
+public class TestLoadDriver {
+
+    @Test
+    public void shouldRunExactlyTheOperationCountAcrossThreads() {
+        //GIVEN
+        final AtomicLong executions = new AtomicLong();
+        LoadDriver driver = new LoadDriver().withThreads(4).withOperationCount(1000)
+                .withOperation("read", 3, new LoadOperation() {
+                    @Override
+                    public void execute() {
+                        executions.incrementAndGet();
+                    }
+                })
+                .withOperation("write", 1, new LoadOperation() {
+                    @Override
+                    public void execute() {
+                        throw new IllegalStateException("duplicate key");
+                    }
+                });
+
+        //WHEN
+        LoadReport report = driver.run();
+
+        //THEN
+        Assertions.assertThat(report.getCount() + report.getErrors()).isEqualTo(1000);
+        Assertions.assertThat(report.getOperation("read").getCount()).isEqualTo(executions.get());
+        Assertions.assertThat(report.getOperation("write").getCount()).isZero();
+        Assertions.assertThat(report.getOperation("write").getErrors()).isGreaterThan(0);
+    }
+
+    @Test
+    public void shouldThrottleToTheTargetRate() {
+        //GIVEN
+        LoadDriver driver = new LoadDriver().withThreads(2).withOperationCount(20).withTargetRate(100)
+                .withVirtualThreads()
+                .withOperation("noop", 1, new LoadOperation() {
+                    @Override
+                    public void execute() {
+                    }
+                });
+
+        //WHEN
+        LoadReport report = driver.run();
+
+        //THEN
+        Assertions.assertThat(report.getCount()).isEqualTo(20);
+        Assertions.assertThat(report.getElapsedNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(190));
+    }
+}
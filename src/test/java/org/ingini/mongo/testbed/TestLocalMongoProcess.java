@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import org.fest.assertions.Assertions;
+import org.fest.assertions.Fail;
+import org.ingini.monogo.testbed.process.LocalMongoProcess;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests the readiness detection of locally started mongo processes with a shell script standing in for mongod
+ */
+public class TestLocalMongoProcess {
+
+    private static final int UNUSED_PORT = 1;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LocalMongoProcess process;
+
+    @After
+    public void stopProcess() {
+        if (process != null) {
+            process.stop();
+        }
+    }
+
+    @Test
+    public void shouldBeReadyAsSoonAsTheProcessIsWaitingForConnections() throws IOException {
+        //GIVEN
+        process = fakeMongod("sleep 0.2; echo '[initandlisten] waiting for connections on port 1'; sleep 30");
+
+        //WHEN
+        process.start(10000);
+
+        //THEN
+        Assertions.assertThat(process.isAlive()).isTrue();
+        Assertions.assertThat(process.getStartupTimeMillis()).isGreaterThanOrEqualTo(0).isLessThan(10000);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailWhenTheProcessExitsBeforeBeingReady() throws IOException {
+        //GIVEN
+        process = fakeMongod("echo 'exception in initAndListen'; exit 100");
+
+        //WHEN
+        process.start(10000);
+    }
+
+    @Test
+    public void shouldGiveUpAfterTheDeadline() throws IOException {
+        //GIVEN
+        process = fakeMongod("sleep 30");
+
+        //WHEN
+        try {
+            process.start(300);
+            Fail.fail("The process should not be ready");
+        } catch (IllegalStateException e) {
+            //THEN
+            Assertions.assertThat(e.getMessage()).contains("did not accept connections");
+        }
+        Assertions.assertThat(process.isAlive()).isFalse();
+    }
+
+    private LocalMongoProcess fakeMongod(String script) {
+        return new LocalMongoProcess(Arrays.asList("sh", "-c", script), UNUSED_PORT, temporaryFolder.getRoot());
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.DBCollection;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.MongoManager;
+import org.ingini.monogo.testbed.annotation.MongoTestBedCollection;
+import org.ingini.monogo.testbed.annotation.MongoTestBedGenerated;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+/**
+ * Tests seeding several annotated collections concurrently
+ */
+public class TestMongoConcurrentSeeding {
+
+    @ClassRule
+    public static MongoManager mongoManager = MongoManager.mongoFlapdoodle().withSeedingThreads(4).withBatchSize(1);
+
+    @MongoTestBedCollection(name = "first_collection", location = "test_collection.json")
+    public static DBCollection firstCollection;
+
+    @MongoTestBedCollection(name = "second_collection", location = "test_collection.json")
+    public static DBCollection secondCollection;
+
+    @MongoTestBedCollection(name = "third_collection", location = "test_collection.json")
+    public static DBCollection thirdCollection;
+
+    @MongoTestBedCollection(name = "generated_collection", location = "test_collection_template.json")
+    @MongoTestBedGenerated(count = 1000, seed = 42)
+    public static DBCollection generatedCollection;
+
+    @Test
+    public void shouldSeedEveryCollectionCompletely() {
+        //GIVEN the concurrently seeded collections
+
+        //WHEN
+        long[] counts = {firstCollection.count(), secondCollection.count(), thirdCollection.count(),
+                generatedCollection.count()};
+
+        //THEN
+        Assertions.assertThat(counts).isEqualTo(new long[]{4, 4, 4, 1000});
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.MongoManager;
+import org.ingini.monogo.testbed.annotation.MongoTestBedCollection;
+import org.ingini.monogo.testbed.assertion.ExpectedState;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import static org.fest.assertions.Fail.fail;
+
+/**
+ * Tests checking a live collection against an expected fixture
+ */
+public class TestMongoExpectedState {
+
+    @ClassRule
+    public static MongoManager mongoManager = MongoManager.mongoFlapdoodle().withPerTestReset();
+
+    @Rule
+    public TestRule reset = mongoManager.resetRule();
+
+    @MongoTestBedCollection(name = "test_collection", location = "test_collection.json")
+    public static DBCollection collection;
+
+    @Test
+    public void shouldMatchTheSeededFixture() {
+        //GIVEN the seeded collection
+
+        //WHEN
+        ExpectedState.of(collection).matches("test_collection.json");
+
+        //THEN no assertion error
+    }
+
+    @Test
+    public void shouldReportTheFirstDifferingDocuments() {
+        //GIVEN
+        collection.update(new BasicDBObject("first_level_boolean", false),
+                new BasicDBObject("$set", new BasicDBObject("first_level_string", "Changed by a test")));
+        collection.insert(new BasicDBObject("first_level_string", "Inserted by a test"));
+
+        //WHEN
+        try {
+            ExpectedState.of(collection).withBatchSize(1).matches("test_collection.json");
+            fail("The changed and inserted documents should have been reported");
+        } catch (AssertionError e) {
+            //THEN
+            Assertions.assertThat(e.getMessage()).contains("Changed by a test").contains("Inserted by a test");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.MongoManager;
+import org.ingini.monogo.testbed.annotation.MongoTestBedCollection;
+import org.ingini.monogo.testbed.assertion.ExpectedState;
+import org.ingini.monogo.testbed.fixture.CollectionCopier;
+import org.ingini.monogo.testbed.fixture.FixtureCache;
+import org.ingini.monogo.testbed.fixture.FixtureDigest;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+/**
+ * Tests restoring seeded collections from their templates
+ */
+public class TestMongoFixtureCache {
+
+    private static final String LOCATION = "test_collection.json";
+
+    @ClassRule
+    public static MongoManager mongoManager = MongoManager.mongoFlapdoodle().withPerTestReset();
+
+    @Rule
+    public TestRule reset = mongoManager.resetRule();
+
+    @MongoTestBedCollection(name = "test_collection", location = LOCATION)
+    public static DBCollection collection;
+
+    @Test
+    public void shouldMissWithoutTemplate() {
+        //GIVEN
+        FixtureCache fixtureCache = new FixtureCache(collection.getDB());
+
+        //WHEN
+        DBCollection restored = fixtureCache.restore("never_stored", LOCATION);
+
+        //THEN
+        Assertions.assertThat(restored).isNull();
+    }
+
+    @Test
+    public void shouldRestoreFromTheStoredTemplate() {
+        //GIVEN
+        FixtureCache fixtureCache = new FixtureCache(collection.getDB());
+        fixtureCache.store("test_collection", LOCATION);
+        collection.drop();
+
+        //WHEN
+        DBCollection restored = fixtureCache.restore("test_collection", LOCATION);
+
+        //THEN
+        Assertions.assertThat(restored).isNotNull();
+        ExpectedState.of(restored).matches(LOCATION);
+    }
+
+    @Test
+    public void shouldMissOnceTheFixtureParametersChange() {
+        //GIVEN
+        FixtureCache fixtureCache = new FixtureCache(collection.getDB());
+        fixtureCache.store("test_collection", LOCATION, "count=4");
+
+        //WHEN
+        DBCollection restored = fixtureCache.restore("test_collection", LOCATION, "count=5");
+
+        //THEN
+        Assertions.assertThat(restored).isNull();
+    }
+
+    @Test
+    public void shouldKeepTheTemplatesOfCollectionsExtendingTheName() {
+        //GIVEN
+        DB mongoDB = collection.getDB();
+        new CollectionCopier(mongoDB).copy("test_collection", "test_collection.archive");
+        FixtureCache fixtureCache = new FixtureCache(mongoDB);
+        fixtureCache.store("test_collection.archive", LOCATION);
+
+        //WHEN
+        fixtureCache.store("test_collection", LOCATION, "count=4");
+
+        //THEN
+        Assertions.assertThat(mongoDB.collectionExists(FixtureCache.TEMPLATE_PREFIX + "test_collection.archive."
+                + FixtureDigest.of(LOCATION))).isTrue();
+    }
+
+    @Test
+    public void shouldNeverRestoreFromAnInterruptedCopy() {
+        //GIVEN
+        DB mongoDB = collection.getDB();
+        String digest = FixtureDigest.of(LOCATION, "count=1");
+        String partial = FixtureCache.PARTIAL_TEMPLATE_PREFIX + "test_collection." + digest;
+        mongoDB.getCollection(partial).insert(collection.findOne());
+        FixtureCache fixtureCache = new FixtureCache(mongoDB);
+
+        //WHEN
+        DBCollection missed = fixtureCache.restore("test_collection", LOCATION, "count=1");
+        fixtureCache.store("test_collection", LOCATION, "count=1");
+
+        //THEN
+        Assertions.assertThat(missed).isNull();
+        Assertions.assertThat(mongoDB.collectionExists(partial)).isFalse();
+        Assertions.assertThat(mongoDB.getCollection(FixtureCache.TEMPLATE_PREFIX + "test_collection." + digest)
+                .count(new BasicDBObject())).isEqualTo(4);
+    }
+}
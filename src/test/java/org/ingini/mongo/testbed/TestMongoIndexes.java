@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.MongoManager;
+import org.ingini.monogo.testbed.annotation.MongoTestBedCollection;
+import org.ingini.monogo.testbed.annotation.MongoTestBedIndex;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests the indexes declared on a seeded collection
+ */
+public class TestMongoIndexes {
+
+    @ClassRule
+    public static MongoManager mongoManager = MongoManager.mongoFlapdoodle();
+
+    @MongoTestBedCollection(name = "test_collection", location = "test_collection.json", indexes = {
+            @MongoTestBedIndex(keys = "{ '_id' : 1, 'dateAsLong' : 1 }", name = "by_id_and_date", unique = true),
+            @MongoTestBedIndex(keys = "{ 'second_level.second_level_int' : 1 }", name = "by_second_level_int", sparse = true),
+            @MongoTestBedIndex(keys = "{ 'first_level_string' : -1 }")})
+    public static DBCollection collection;
+
+    @Test
+    public void shouldBuildTheDeclaredIndexes() {
+        //GIVEN the seeded collection
+
+        //WHEN
+        Map<String, DBObject> indexes = new HashMap<String, DBObject>();
+        for (DBObject index : collection.getIndexInfo()) {
+            indexes.put((String) index.get("name"), index);
+        }
+
+        //THEN
+        Assertions.assertThat(indexes.keySet())
+                .containsOnly("_id_", "by_id_and_date", "by_second_level_int", "first_level_string_-1");
+        Assertions.assertThat(indexes.get("by_id_and_date").get("key"))
+                .isEqualTo(new BasicDBObject("_id", 1).append("dateAsLong", 1));
+        Assertions.assertThat(indexes.get("by_id_and_date").get("unique")).isEqualTo(true);
+        Assertions.assertThat(indexes.get("by_second_level_int").get("key"))
+                .isEqualTo(new BasicDBObject("second_level.second_level_int", 1));
+        Assertions.assertThat(indexes.get("by_second_level_int").get("sparse")).isEqualTo(true);
+        Assertions.assertThat(indexes.get("by_second_level_int").get("unique")).isNull();
+        Assertions.assertThat(indexes.get("first_level_string_-1").get("key"))
+                .isEqualTo(new BasicDBObject("first_level_string", -1));
+        Assertions.assertThat(collection.count()).isEqualTo(4);
+    }
+}
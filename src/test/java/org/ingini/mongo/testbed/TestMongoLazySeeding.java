@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.MongoManager;
+import org.ingini.monogo.testbed.annotation.MongoTestBedCollection;
+import org.ingini.monogo.testbed.annotation.MongoTestBedUses;
+import org.junit.ClassRule;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import javax.inject.Inject;
+
+import static org.fest.assertions.Fail.fail;
+
+/**
+ * Tests that only the annotated collections used by the running tests are seeded
+ */
+public class TestMongoLazySeeding {
+
+    @ClassRule
+    public static MongoManager mongoManager = MongoManager.mongoFlapdoodle().withLazySeeding();
+
+    @MongoTestBedCollection(name = "test_collection", location = "test_collection.json")
+    public static DBCollection collection;
+
+    @MongoTestBedCollection(name = "unused_collection", location = "test_collection.json")
+    public static DBCollection unusedCollection;
+
+    @Inject
+    public static DB mongoDB;
+
+    public static class UndeclaredCollectionTestClass {
+        @MongoTestBedCollection(name = "undeclared_collection", location = "test_collection.json")
+        public static DBCollection undeclaredCollection;
+
+        @Test
+        @MongoTestBedUses({})
+        public void usesNoCollection() {
+        }
+    }
+
+    @Test
+    @MongoTestBedUses("test_collection")
+    public void shouldSeedOnlyTheUsedCollection() {
+        //GIVEN the collection used by the only test
+
+        //WHEN
+        long count = collection.count();
+
+        //THEN
+        Assertions.assertThat(count).isEqualTo(4);
+        Assertions.assertThat(mongoDB.collectionExists("unused_collection")).isFalse();
+        Assertions.assertThat(unusedCollection).isNull();
+    }
+
+    @Test
+    @Ignore("never runs, hence never seeds the unused collection")
+    @MongoTestBedUses("unused_collection")
+    public void shouldNotSeedTheCollectionsOfIgnoredTests() {
+        Assertions.assertThat(unusedCollection.count()).isEqualTo(4);
+    }
+
+    @Test
+    @MongoTestBedUses({})
+    public void shouldNameTheFieldOfACollectionWhichNoTestDeclares() throws Throwable {
+        //GIVEN
+        Statement tests = new Statement() {
+            @Override
+            public void evaluate() {
+                fail("The undeclared collection should have failed the setup");
+            }
+        };
+
+        //WHEN
+        try {
+            MongoManager.mongoFlapdoodle().withLazySeeding()
+                    .apply(tests, Description.createSuiteDescription(UndeclaredCollectionTestClass.class)).evaluate();
+            fail("The setup should have failed");
+        } catch (IllegalStateException e) {
+            //THEN
+            Assertions.assertThat(e.getMessage()).contains("undeclaredCollection").contains("undeclared_collection");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.MongoManager;
+import org.ingini.monogo.testbed.annotation.MongoTestBedCollection;
+import org.ingini.monogo.testbed.metrics.Phase;
+import org.ingini.monogo.testbed.metrics.PhaseTiming;
+import org.ingini.monogo.testbed.metrics.TestBedListener;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Tests that every test starts from the seeded data, whichever test ran before
+ */
+public class TestMongoPerTestReset {
+
+    private static final Set<String> restoredCollections = new CopyOnWriteArraySet<String>();
+
+    @ClassRule
+    public static MongoManager mongoManager = MongoManager.mongoFlapdoodle().withPerTestReset()
+            .withListener(new TestBedListener() {
+                @Override
+                public void phaseCompleted(PhaseTiming timing) {
+                    if (timing.getPhase() == Phase.RESTORE) {
+                        restoredCollections.add(timing.getCollection());
+                    }
+                }
+
+                @Override
+                public void testClassFinished(String testClass, List<PhaseTiming> timings) {
+                }
+            });
+
+    @Rule
+    public TestRule reset = mongoManager.resetRule();
+
+    @MongoTestBedCollection(name = "test_collection", location = "test_collection.json")
+    public static DBCollection collection;
+
+    @MongoTestBedCollection(name = "read_only_collection", location = "test_collection.json")
+    public static DBCollection readOnlyCollection;
+
+    @Inject
+    public static DB mongoDB;
+
+    @Test
+    public void shouldSeeAllDocumentsAfterAnotherTestRemovedOne() {
+        //GIVEN
+        Assertions.assertThat(collection.count()).isEqualTo(4);
+
+        //WHEN
+        collection.remove(new BasicDBObject("first_level_boolean", false));
+
+        //THEN
+        Assertions.assertThat(collection.count()).isLessThan(4);
+    }
+
+    @Test
+    public void shouldSeeAllDocumentsAfterAnotherTestInsertedOne() {
+        //GIVEN
+        Assertions.assertThat(collection.count()).isEqualTo(4);
+
+        //WHEN
+        collection.insert(new BasicDBObject("first_level_string", "Inserted by a test"));
+
+        //THEN
+        Assertions.assertThat(collection.count()).isEqualTo(5);
+    }
+
+    @Test
+    public void shouldSeeAllDocumentsAfterAnotherTestWroteThroughAnotherHandle() {
+        //GIVEN
+        Assertions.assertThat(collection.count()).isEqualTo(4);
+
+        //WHEN
+        mongoDB.getCollection("test_collection").remove(new BasicDBObject());
+
+        //THEN
+        Assertions.assertThat(collection.count()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldNotRestoreCollectionsWhichNoTestWrote() {
+        //GIVEN
+        Assertions.assertThat(readOnlyCollection.find(new BasicDBObject("first_level_boolean", false)).count()).isPositive();
+
+        //WHEN
+        collection.remove(new BasicDBObject());
+
+        //THEN
+        Assertions.assertThat(restoredCollections).excludes("read_only_collection");
+    }
+}
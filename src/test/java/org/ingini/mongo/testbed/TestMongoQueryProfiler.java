@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.MongoManager;
+import org.ingini.monogo.testbed.annotation.MongoTestBedCollection;
+import org.ingini.monogo.testbed.annotation.MongoTestBedIndex;
+import org.ingini.monogo.testbed.profile.ProfiledOperation;
+import org.ingini.monogo.testbed.profile.QueryProfiler;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.fest.assertions.Fail.fail;
+
+/**
+ * Tests capturing the plans of the queries run by a test
+ */
+public class TestMongoQueryProfiler {
+
+    @ClassRule
+    public static MongoManager mongoManager = MongoManager.mongoFlapdoodle();
+
+    @Rule
+    public QueryProfiler profiler = mongoManager.profiler();
+
+    @MongoTestBedCollection(name = "test_collection", location = "test_collection.json",
+            indexes = @MongoTestBedIndex(keys = "{'dateAsLong': 1}"))
+    public static DBCollection collection;
+
+    @Test
+    public void shouldPassForIndexedQueries() {
+        //GIVEN
+        collection.findOne(new BasicDBObject("dateAsLong", 61302693600000L));
+
+        //WHEN
+        profiler.profile().on("test_collection").assertNoFullScans();
+
+        //THEN no assertion error
+    }
+
+    @Test
+    public void shouldPassForQueriesSortedThroughAnIndex() {
+        //GIVEN
+        collection.find().sort(new BasicDBObject("dateAsLong", 1)).toArray();
+
+        //WHEN
+        profiler.profile().on("test_collection").assertNoFullScans();
+
+        //THEN no assertion error
+    }
+
+    @Test
+    public void shouldReportFullScans() {
+        //GIVEN
+        collection.findOne(new BasicDBObject("first_level_boolean", true));
+
+        //WHEN
+        try {
+            profiler.profile().on("test_collection").assertNoFullScans();
+            fail("The query on first_level_boolean should have been reported as full scan");
+        } catch (AssertionError e) {
+            //THEN
+            Assertions.assertThat(e.getMessage()).contains("first_level_boolean").contains(ProfiledOperation.BASIC_CURSOR);
+        }
+    }
+}
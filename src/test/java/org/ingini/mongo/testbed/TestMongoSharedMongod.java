@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.Mongo;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcern;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.MongoManager;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests two test classes sharing the JVM-wide mongod
+ */
+public class TestMongoSharedMongod {
+
+    public static class FirstTestClass {
+        @Inject
+        public static DB mongoDB;
+    }
+
+    public static class SecondTestClass {
+        @Inject
+        public static DB mongoDB;
+    }
+
+    @Test
+    public void shouldShareOneMongodAndDropEachDatabaseOnStop() throws Throwable {
+        //GIVEN
+        final List<ServerAddress> addresses = new ArrayList<ServerAddress>();
+        final List<String> databaseNames = new ArrayList<String>();
+        final List<String> databaseNamesAfterSecondStop = new ArrayList<String>();
+        final Statement secondTests = new Statement() {
+            @Override
+            public void evaluate() {
+                addresses.add(SecondTestClass.mongoDB.getMongo().getAddress());
+                databaseNames.add(SecondTestClass.mongoDB.getName());
+                SecondTestClass.mongoDB.getCollection("shared").insert(new BasicDBObject("second", true), WriteConcern.SAFE);
+            }
+        };
+        Statement firstTests = new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                addresses.add(FirstTestClass.mongoDB.getMongo().getAddress());
+                databaseNames.add(FirstTestClass.mongoDB.getName());
+                FirstTestClass.mongoDB.getCollection("shared").insert(new BasicDBObject("first", true), WriteConcern.SAFE);
+                MongoManager.mongoFlapdoodleShared()
+                        .apply(secondTests, Description.createSuiteDescription(SecondTestClass.class)).evaluate();
+                databaseNamesAfterSecondStop.addAll(FirstTestClass.mongoDB.getMongo().getDatabaseNames());
+            }
+        };
+
+        //WHEN
+        MongoManager.mongoFlapdoodleShared()
+                .apply(firstTests, Description.createSuiteDescription(FirstTestClass.class)).evaluate();
+
+        //THEN
+        Assertions.assertThat(addresses.get(1)).isEqualTo(addresses.get(0));
+        Assertions.assertThat(databaseNames.get(1)).isNotEqualTo(databaseNames.get(0));
+        Assertions.assertThat(databaseNamesAfterSecondStop).contains(databaseNames.get(0)).excludes(databaseNames.get(1));
+        Mongo mongo = new Mongo(addresses.get(0));
+        try {
+            Assertions.assertThat(mongo.getDatabaseNames()).excludes(databaseNames.toArray());
+        } finally {
+            mongo.close();
+        }
+    }
+}
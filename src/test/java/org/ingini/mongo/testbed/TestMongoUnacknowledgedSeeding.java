@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.DBCollection;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.MongoManager;
+import org.ingini.monogo.testbed.annotation.MongoTestBedCollection;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import static org.fest.assertions.Fail.fail;
+
+/**
+ * Tests that unacknowledged inserts which failed do not go unnoticed
+ */
+public class TestMongoUnacknowledgedSeeding {
+
+    public static class DuplicateIdTestClass {
+        @MongoTestBedCollection(name = "duplicate_id_collection", location = "duplicate_id_collection.json",
+                writeConcern = "NONE", batchSize = 1)
+        public static DBCollection collection;
+    }
+
+    @Test
+    public void shouldFailSeedingWhenAnEarlierUnacknowledgedInsertFailed() throws Throwable {
+        //GIVEN
+        Statement tests = new Statement() {
+            @Override
+            public void evaluate() {
+                fail("The duplicate _id should have failed the seeding");
+            }
+        };
+
+        //WHEN
+        try {
+            MongoManager.mongoFlapdoodle()
+                    .apply(tests, Description.createSuiteDescription(DuplicateIdTestClass.class)).evaluate();
+            fail("The seeding should have failed");
+        } catch (IllegalStateException e) {
+            //THEN
+            Assertions.assertThat(e.getMessage()).contains("duplicate_id_collection").contains("holds 2 document(s) after loading 3");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DefaultDBEncoder;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.fixture.BulkLoadOptions;
+import org.ingini.monogo.testbed.fixture.FixtureFormat;
+import org.ingini.monogo.testbed.fixture.ParallelFixtureLoader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests splitting large fixtures into ranges for the parallel readers
+ */
+public class TestParallelFixtureLoader {
+
+    private static final int READERS = 4;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ParallelFixtureLoader loader = new ParallelFixtureLoader(BulkLoadOptions.batchSize(100), READERS);
+
+    @Test
+    public void shouldSplitNdjsonOnLineBoundaries() throws IOException {
+        //GIVEN
+        File fixture = temporaryFolder.newFile("export.json");
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            lines.append("{\"_id\": ").append(i).append(", \"name\": \"document ").append(i).append("\"}\n");
+        }
+        Files.write(fixture.toPath(), lines.toString().getBytes("UTF-8"));
+        byte[] bytes = Files.readAllBytes(fixture.toPath());
+
+        //WHEN
+        long[] boundaries = loader.split(fixture, FixtureFormat.NDJSON);
+
+        //THEN
+        Assertions.assertThat(boundaries).hasSize(READERS + 1);
+        Assertions.assertThat(boundaries[READERS]).isEqualTo(bytes.length);
+        for (int i = 1; i < READERS; i++) {
+            Assertions.assertThat(boundaries[i]).isGreaterThan(boundaries[i - 1]);
+            Assertions.assertThat(bytes[(int) boundaries[i] - 1]).isEqualTo((byte) '\n');
+        }
+    }
+
+    @Test
+    public void shouldSplitBsonOnDocumentBoundaries() throws IOException {
+        //GIVEN
+        File fixture = temporaryFolder.newFile("test_collection.bson");
+        Set<Long> documentStarts = new HashSet<Long>();
+        DefaultDBEncoder encoder = new DefaultDBEncoder();
+        OutputStream outputStream = new FileOutputStream(fixture);
+        long offset = 0;
+        for (int i = 0; i < 1000; i++) {
+            documentStarts.add(offset);
+            byte[] document = encoder.encode(new BasicDBObject("_id", i).append("padding", new byte[i % 50]));
+            outputStream.write(document);
+            offset += document.length;
+        }
+        outputStream.close();
+
+        //WHEN
+        long[] boundaries = loader.split(fixture, FixtureFormat.BSON);
+
+        //THEN
+        Assertions.assertThat(boundaries[READERS]).isEqualTo(offset);
+        for (int i = 0; i < READERS; i++) {
+            Assertions.assertThat(documentStarts.contains(boundaries[i])).isTrue();
+            Assertions.assertThat(boundaries[i]).isGreaterThanOrEqualTo(offset / READERS * i);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import com.mongodb.BasicDBObject;
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.profile.ProfiledOperation;
+import org.ingini.monogo.testbed.profile.QueryProfile;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.fest.assertions.Fail.fail;
+
+/**
+ * Tests the assertions on profiled operations
+ */
+public class TestQueryProfile {
+
+    private static final ProfiledOperation INDEXED = operation("test_collection", 1, 1, 0, "BtreeCursor name_1");
+    private static final ProfiledOperation SCANNED = operation("test_collection", 4, 1, 12, ProfiledOperation.BASIC_CURSOR);
+    private static final ProfiledOperation OTHER = operation("other_collection", 4, 1, 0, ProfiledOperation.COLLSCAN);
+
+    @Test
+    public void shouldListTheFullScansOfACollection() {
+        //GIVEN
+        QueryProfile profile = new QueryProfile(Arrays.asList(INDEXED, SCANNED, OTHER));
+
+        //WHEN
+        try {
+            profile.on("test_collection").assertNoFullScans();
+            fail("A full scan should have been reported");
+        } catch (AssertionError e) {
+            //THEN
+            Assertions.assertThat(e.getMessage()).startsWith("1 of 2 operation(s) did a full collection scan:");
+            Assertions.assertThat(e.getMessage()).contains("{ \"name\" : \"Ivan\"}");
+        }
+    }
+
+    @Test
+    public void shouldPassWhenRatioAndDurationAreBelowTheLimits() {
+        //GIVEN
+        QueryProfile profile = new QueryProfile(Arrays.asList(INDEXED, SCANNED));
+
+        //WHEN
+        profile.assertScanRatioBelow(5).assertSlowestBelow(13);
+
+        //THEN
+        Assertions.assertThat(SCANNED.getScanRatio()).isEqualTo(4.0);
+    }
+
+    @Test
+    public void shouldUnwrapTheSelectorFromTheQueryModifiers() {
+        //GIVEN
+        ProfiledOperation sorted = new ProfiledOperation(new BasicDBObject("op", "query")
+                .append("query", new BasicDBObject("query", new BasicDBObject("name", "Ivan"))
+                        .append("orderby", new BasicDBObject("age", -1)).append("$hint", "name_1")), null);
+
+        //WHEN
+        Object hint = sorted.getHint();
+
+        //THEN
+        Assertions.assertThat(hint).isEqualTo("name_1");
+        Assertions.assertThat(sorted.getQuery()).isEqualTo(new BasicDBObject("name", "Ivan"));
+        Assertions.assertThat(sorted.getOrderBy()).isEqualTo(new BasicDBObject("age", -1));
+        Assertions.assertThat(INDEXED.getOrderBy()).isNull();
+        Assertions.assertThat(INDEXED.getHint()).isNull();
+    }
+
+    private static ProfiledOperation operation(String collection, long nscanned, long nreturned, long millis, String plan) {
+        return new ProfiledOperation(new BasicDBObject("op", "query").append("ns", "monogo_testbed_db." + collection)
+                .append("query", new BasicDBObject("name", "Ivan")).append("nscanned", nscanned)
+                .append("nreturned", nreturned).append("millis", millis), plan);
+    }
+}
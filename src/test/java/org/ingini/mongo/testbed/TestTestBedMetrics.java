@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.metrics.FileMetricsListener;
+import org.ingini.monogo.testbed.metrics.Phase;
+import org.ingini.monogo.testbed.metrics.PhaseTiming;
+import org.ingini.monogo.testbed.metrics.TestBedListener;
+import org.ingini.monogo.testbed.metrics.TestBedMetrics;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the collection and dispatching of the testbed phase timings
+ */
+public class TestTestBedMetrics {
+
+    private static final String TEST_CLASS = "org.example.TestSomething";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldAttributeTimingsRecordedBeforeTheTestClassStarted() {
+        //GIVEN
+        TestBedMetrics metrics = new TestBedMetrics();
+        metrics.recordDuration(Phase.PROCESS_START, null, 1000, PhaseTiming.UNKNOWN, PhaseTiming.UNKNOWN);
+        RecordingListener listener = new RecordingListener();
+        metrics.addListener(listener);
+
+        //WHEN
+        metrics.testClassStarted(TEST_CLASS);
+        metrics.recordDuration(Phase.INSERT, "test_collection", 2000, 4, PhaseTiming.UNKNOWN);
+        metrics.testClassFinished();
+
+        //THEN
+        Assertions.assertThat(listener.completed).hasSize(2);
+        Assertions.assertThat(listener.completed.get(0).getPhase()).isEqualTo(Phase.PROCESS_START);
+        Assertions.assertThat(listener.completed.get(0).getTestClass()).isEqualTo(TEST_CLASS);
+        Assertions.assertThat(listener.finished).hasSize(2);
+        Assertions.assertThat(listener.finished.get(1).getDocuments()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldAppendCsvLinesWithASingleHeader() throws IOException {
+        //GIVEN
+        File file = new File(temporaryFolder.getRoot(), "metrics/testbed.csv");
+        List<PhaseTiming> timings = new ArrayList<PhaseTiming>();
+        timings.add(new PhaseTiming(TEST_CLASS, Phase.INSERT, "test_collection", 1500000, 4, PhaseTiming.UNKNOWN));
+
+        //WHEN
+        FileMetricsListener.csv(file).testClassFinished(TEST_CLASS, timings);
+        FileMetricsListener.csv(file).testClassFinished(TEST_CLASS, timings);
+
+        //THEN
+        List<String> lines = Files.readAllLines(file.toPath(), Charset.forName("UTF-8"));
+        Assertions.assertThat(lines).hasSize(3);
+        Assertions.assertThat(lines.get(0)).isEqualTo("test_class,phase,collection,duration_ms,documents,bytes");
+        Assertions.assertThat(lines.get(1)).isEqualTo(TEST_CLASS + ",INSERT,test_collection,1.500,4,");
+    }
+
+    private static class RecordingListener implements TestBedListener {
+
+        private final List<PhaseTiming> completed = new ArrayList<PhaseTiming>();
+        private List<PhaseTiming> finished;
+
+        @Override
+        public void phaseCompleted(PhaseTiming timing) {
+            completed.add(timing);
+        }
+
+        @Override
+        public void testClassFinished(String testClass, List<PhaseTiming> timings) {
+            finished = timings;
+        }
+    }
+}
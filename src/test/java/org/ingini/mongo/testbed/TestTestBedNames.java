@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.MongoManager;
+import org.ingini.monogo.testbed.TestBedNames;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the per-fork and per-thread database names
+ */
+public class TestTestBedNames {
+
+    @After
+    public void clearForkNumber() {
+        System.clearProperty(TestBedNames.FORK_PROPERTY);
+    }
+
+    @Test
+    public void shouldGiveEveryThreadADatabaseOfItsOwn() throws InterruptedException {
+        //GIVEN
+        final AtomicReference<String> otherThreadName = new AtomicReference<String>();
+        Thread otherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                otherThreadName.set(TestBedNames.databaseName());
+            }
+        });
+
+        //WHEN
+        String name = TestBedNames.databaseName();
+        otherThread.start();
+        otherThread.join();
+
+        //THEN
+        Assertions.assertThat(name).startsWith(MongoManager.MONOGO_TESTBED_DB);
+        Assertions.assertThat(TestBedNames.databaseName()).isEqualTo(name);
+        Assertions.assertThat(otherThreadName.get()).startsWith(MongoManager.MONOGO_TESTBED_DB).isNotEqualTo(name);
+    }
+
+    @Test
+    public void shouldIncludeTheForkNumber() {
+        //GIVEN
+        System.setProperty(TestBedNames.FORK_PROPERTY, "3");
+
+        //WHEN
+        String name = TestBedNames.databaseName();
+
+        //THEN
+        Assertions.assertThat(name).startsWith(MongoManager.MONOGO_TESTBED_DB + "_f3");
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2012 Ivan Hristov <hristov.iv@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ingini.mongo.testbed;
+
+import org.fest.assertions.Assertions;
+import org.ingini.monogo.testbed.process.ReplicaSet;
+import org.ingini.monogo.testbed.process.ShardedCluster;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+/**
+ * Tests that every topology keeps its data files in a directory of its own, which is gone once stopped
+ */
+public class TestTopologyDataDirectories {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldDeleteTheReplicaSetDataDirectoryOnStop() {
+        //GIVEN
+        File dbpath = temporaryFolder.getRoot();
+        ReplicaSet first = new ReplicaSet("mongod", dbpath.getPath(), ReplicaSet.DEFAULT_NAME, 2);
+        ReplicaSet second = new ReplicaSet("mongod", dbpath.getPath(), ReplicaSet.DEFAULT_NAME, 2);
+        Assertions.assertThat(dbpath.list()).hasSize(2);
+
+        //WHEN
+        first.stop();
+        second.stop();
+
+        //THEN
+        Assertions.assertThat(dbpath.list()).isEmpty();
+    }
+
+    @Test
+    public void shouldDeleteTheShardedClusterDataDirectoryOnStop() {
+        //GIVEN
+        File dbpath = temporaryFolder.getRoot();
+        ShardedCluster cluster = new ShardedCluster("mongod", "mongos", dbpath.getPath(), 2, 1);
+        Assertions.assertThat(dbpath.list()).hasSize(1);
+
+        //WHEN
+        cluster.stop();
+
+        //THEN
+        Assertions.assertThat(dbpath.list()).isEmpty();
+    }
+}